@@ -0,0 +1,166 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// load generator for the HTTP API, start the server first (carRentalSystem --serve 8080 --no-save), then
+//   java scripts/LoadGen.java [--url http://localhost:8080] [--concurrency 2000] [--requests 100000]
+// every virtual thread loops over a mix of bookings, cancellations, availability queries, searches and statistics
+// and the run ends with throughput, latency percentiles and the count of every HTTP status
+public class LoadGen {
+
+    private static final Pattern ID = Pattern.compile("\"id\":\"([^\"]+)\"");
+
+    public static void main(String[] args) throws Exception {
+        String url = "http://localhost:8080";
+        int concurrency = 2000;
+        int requests = 100_000;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--url":
+                    url = args[i + 1];
+                    break;
+                case "--concurrency":
+                    concurrency = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--requests":
+                    requests = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+
+        List<String> carIds = ids(client, url + "/cars");
+        List<String> customerIds = ids(client, url + "/customers/search?q=");
+        if (carIds.isEmpty() || customerIds.isEmpty()) {
+            System.err.println("The server has no cars or no customers to book.");
+            System.exit(1);
+        }
+        System.out.printf("%d cars, %d customers, %d requests on %d virtual threads%n",
+                carIds.size(), customerIds.size(), requests, concurrency);
+
+        String base = url;
+        AtomicInteger remaining = new AtomicInteger(requests);
+        long[] latencies = new long[requests];
+        AtomicInteger recorded = new AtomicInteger();
+        Map<Integer, AtomicInteger> statuses = new ConcurrentHashMap<>();
+        AtomicLongArray perKind = new AtomicLongArray(5);
+        Queue<String> created = new ConcurrentLinkedQueue<>();
+
+        long start = System.nanoTime();
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int t = 0; t < concurrency; t++) {
+                workers.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (remaining.getAndDecrement() > 0) {
+                        int kind = random.nextInt(100);
+                        HttpRequest request;
+                        if (kind < 35) {
+                            // book a random car for a few days some time in the next three months
+                            int startDay = random.nextInt(90);
+                            request = post(base + "/rentals?customerId=" + pick(customerIds, random)
+                                    + "&carId=" + pick(carIds, random) + "&startDate=%2B" + startDay
+                                    + "&endDate=%2B" + (startDay + 1 + random.nextInt(6)));
+                            perKind.incrementAndGet(0);
+                        } else if (kind < 45 && !created.isEmpty()) {
+                            String rentalId = created.poll();
+                            request = post(base + "/rentals/" + (rentalId != null ? rentalId : "R000") + "/cancel?reason=loadgen");
+                            perKind.incrementAndGet(1);
+                        } else if (kind < 75) {
+                            int startDay = random.nextInt(60);
+                            request = get(base + "/cars/free?from=%2B" + startDay + "&to=%2B" + (startDay + 3));
+                            perKind.incrementAndGet(2);
+                        } else if (kind < 95) {
+                            request = get(base + "/cars/search?q=" + pick(carIds, random));
+                            perKind.incrementAndGet(3);
+                        } else {
+                            request = get(base + "/stats/rentals");
+                            perKind.incrementAndGet(4);
+                        }
+
+                        long sent = System.nanoTime();
+                        int status;
+                        try {
+                            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                            status = response.statusCode();
+                            if (status == 201) {
+                                Matcher matcher = ID.matcher(response.body());
+                                if (matcher.find()) {
+                                    created.add(matcher.group(1));
+                                }
+                            }
+                        } catch (Exception e) {
+                            status = -1;
+                        }
+                        int slot = recorded.getAndIncrement();
+                        if (slot < latencies.length) {
+                            latencies[slot] = System.nanoTime() - sent;
+                        }
+                        statuses.computeIfAbsent(status, k -> new AtomicInteger()).incrementAndGet();
+                    }
+                    return null;
+                });
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        int count = Math.min(recorded.get(), latencies.length);
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        System.out.printf("requests: %d in %.2f s, %.0f requests/s%n", count, elapsed / 1e9, count / (elapsed / 1e9));
+        System.out.printf("latency ms: p50 %.2f  p90 %.2f  p99 %.2f  max %.2f%n",
+                percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99), percentile(sorted, 100));
+        System.out.printf("mix: book %d, cancel %d, free cars %d, search %d, stats %d%n",
+                perKind.get(0), perKind.get(1), perKind.get(2), perKind.get(3), perKind.get(4));
+        System.out.println("statuses (-1 = connection error): " + new TreeMap<>(statuses));
+    }
+
+    private static List<String> ids(HttpClient client, String url) throws Exception {
+        String body = client.send(get(url), HttpResponse.BodyHandlers.ofString()).body();
+        List<String> ids = new ArrayList<>();
+        Matcher matcher = ID.matcher(body);
+        while (matcher.find()) {
+            ids.add(matcher.group(1));
+        }
+        return ids;
+    }
+
+    private static String pick(List<String> values, ThreadLocalRandom random) {
+        return values.get(random.nextInt(values.size()));
+    }
+
+    private static HttpRequest get(String url) {
+        return HttpRequest.newBuilder(URI.create(url)).timeout(Duration.ofSeconds(30)).GET().build();
+    }
+
+    private static HttpRequest post(String url) {
+        return HttpRequest.newBuilder(URI.create(url)).timeout(Duration.ofSeconds(30))
+                .POST(HttpRequest.BodyPublishers.noBody()).build();
+    }
+
+    private static double percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = Math.min(sorted.length - 1, (int) Math.ceil(percent / 100.0 * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
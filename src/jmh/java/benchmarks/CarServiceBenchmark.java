@@ -0,0 +1,64 @@
+package benchmarks;
+
+import Models.Car;
+import Services.CarService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// id lookups, free text search and facet filters over fleets of 100 to 500k cars (one car per 20 rentals)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CarServiceBenchmark {
+
+    // a make, a model, part of a model, an id, a year and a term too short for the trigram index
+    private static final String[] SEARCH_TERMS = {"Toyota", "Octavia", "class", "C0042", "2019", "x5"};
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int rentals;
+
+    private CarService carService;
+    private int carCount;
+    private PrintStream console;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        console = SyntheticData.silenceConsole();
+        List<Car> cars = SyntheticData.fleet(rentals, 42);
+        carCount = cars.size();
+        carService = new CarService(cars);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(console);
+    }
+
+    @Benchmark
+    public Car findCarById() {
+        return carService.findCarById(SyntheticData.carId(1 + ThreadLocalRandom.current().nextInt(carCount)));
+    }
+
+    @Benchmark
+    public Car findCarByIdMissing() {
+        return carService.findCarById("C0");
+    }
+
+    @Benchmark
+    public List<Car> searchCars() {
+        return carService.searchCars(SEARCH_TERMS[ThreadLocalRandom.current().nextInt(SEARCH_TERMS.length)]);
+    }
+
+    // available SUVs from 2015 on, answered from the enum keyed facet bitsets
+    @Benchmark
+    public List<Car> filterCars() {
+        return carService.filterCars(true, null, "SUV", 2015, null);
+    }
+}
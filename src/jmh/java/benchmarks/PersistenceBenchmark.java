@@ -0,0 +1,92 @@
+package benchmarks;
+
+import Utils.FileHandler;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// readAllData and writeAllData on data files of 1K to 10M rentals in a scratch directory
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+public class PersistenceBenchmark {
+
+    // the data files of one size, written once per trial
+    @State(Scope.Benchmark)
+    public static class Dataset {
+        @Param({"1000", "100000", "1000000", "10000000"})
+        public int rentals;
+
+        SyntheticData data;
+        Path directory;
+        FileHandler fileHandler;
+        private PrintStream console;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            console = SyntheticData.silenceConsole();
+            data = SyntheticData.generate(rentals, 42);
+            directory = Files.createTempDirectory("carRental-jmh");
+            fileHandler = new FileHandler(directory.toString());
+            if (!fileHandler.writeAllData(data.cars, data.customers, data.rentals)) {
+                throw new IllegalStateException("Could not write the benchmark data to " + directory);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            System.setOut(console);
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> {
+                    try {
+                        Files.delete(file);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        }
+    }
+
+    // reads of the CSV alone, without the binary snapshot, in each read mode and with 1 to 8 parser threads
+    // files under 8 MB (up to about 100K rentals) are always streamed on one thread, whatever the parallelism
+    @State(Scope.Benchmark)
+    public static class CsvReader {
+        @Param({"STANDARD", "MAPPED"})
+        public FileHandler.ReadMode readMode;
+
+        @Param({"1", "2", "4", "8"})
+        public int parallelism;
+
+        @Setup(Level.Trial)
+        public void setUp(Dataset dataset) throws IOException {
+            Files.deleteIfExists(dataset.directory.resolve("rentals.snapshot"));
+            dataset.fileHandler.setReadMode(readMode);
+        }
+    }
+
+    // the binary snapshot as after a normal save
+    @Benchmark
+    public FileHandler.DataContainer readAllData(Dataset dataset) {
+        return dataset.fileHandler.readAllData();
+    }
+
+    @Benchmark
+    public FileHandler.DataContainer readCsv(Dataset dataset, CsvReader reader) {
+        return dataset.fileHandler.readAllData(reader.parallelism);
+    }
+
+    @Benchmark
+    public boolean writeAllData(Dataset dataset) {
+        return dataset.fileHandler.writeAllData(dataset.data.cars, dataset.data.customers, dataset.data.rentals);
+    }
+}
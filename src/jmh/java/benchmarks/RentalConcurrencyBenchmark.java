@@ -0,0 +1,184 @@
+package benchmarks;
+
+import Models.Car;
+import Models.Customer;
+import Models.Rental;
+import Services.CarService;
+import Services.CustomerService;
+import Services.RentalService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.PrintStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// stress test of the service layer: 16 threads create, complete and cancel rentals on a small fleet
+// (so bookings collide) and now and then read availability and statistics
+// completions and cancellations pick from a few shared slots of new rentals, so threads race on the same rental
+// after every iteration the data is checked and the run fails if any of these does not hold:
+//   no two active rentals of a car overlap, a car is rented exactly when one of its active rentals has started,
+//   every finished rental was completed or cancelled exactly once and is no longer active,
+//   and the rental counts match the creations, completions and cancellations that succeeded
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(16)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class RentalConcurrencyBenchmark {
+
+    private static final int CARS = 40;
+    private static final int CUSTOMERS = 50;
+    // few enough that the 16 threads keep picking the same rentals
+    private static final int SLOTS = 8;
+
+    private CarService carService;
+    private RentalService rentalService;
+    // a new rental replaces the one in a random slot, a finished one is cleared from its slot;
+    // rentals starting today have their own slots, so completions and cancellations meet on them
+    private final AtomicReferenceArray<String> started = new AtomicReferenceArray<>(SLOTS);
+    private final AtomicReferenceArray<String> reserved = new AtomicReferenceArray<>(SLOTS);
+    // successful completions and cancellations per rental, more than one means two threads both finished it
+    private final Map<String, AtomicInteger> finished = new ConcurrentHashMap<>();
+    private final AtomicInteger createdCount = new AtomicInteger();
+    private final AtomicInteger completedCount = new AtomicInteger();
+    private final AtomicInteger cancelledCount = new AtomicInteger();
+    private PrintStream console;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        console = SyntheticData.silenceConsole();
+        carService = new CarService();
+        for (int i = 1; i <= CARS; i++) {
+            carService.addCar(new Car(SyntheticData.carId(i), "Make" + i % 5, "Model" + i % 3, 2020, "Sedan"));
+        }
+        CustomerService customerService = new CustomerService();
+        for (int i = 1; i <= CUSTOMERS; i++) {
+            customerService.addCustomer(new Customer(SyntheticData.customerId(i), "Customer " + i,
+                    "customer" + i + "@example.com", "+359 888 123 456", "BG" + (1_000_000 + i)));
+        }
+        rentalService = new RentalService(carService, customerService);
+    }
+
+    @TearDown(Level.Iteration)
+    public void verify() {
+        List<String> problems = new ArrayList<>();
+        LocalDate today = LocalDate.now();
+
+        Map<String, List<Rental>> activeByCar = new HashMap<>();
+        for (Rental rental : rentalService.getActiveRentals()) {
+            activeByCar.computeIfAbsent(rental.getCarId(), k -> new ArrayList<>()).add(rental);
+        }
+        for (Car car : carService.getAllCars()) {
+            List<Rental> active = activeByCar.getOrDefault(car.getId(), new ArrayList<>());
+            int started = 0;
+            for (int i = 0; i < active.size(); i++) {
+                Rental rental = active.get(i);
+                if (!rental.getStartDate().isAfter(today)) {
+                    started++;
+                }
+                for (int j = i + 1; j < active.size(); j++) {
+                    Rental other = active.get(j);
+                    if (rental.getStartDate().isBefore(other.getEndDate()) && other.getStartDate().isBefore(rental.getEndDate())) {
+                        problems.add("overlapping rentals " + rental.getRentalId() + " and " + other.getRentalId());
+                    }
+                }
+            }
+            if (started > 1 || car.isAvailable() != (started == 0)) {
+                problems.add("car " + car.getId() + " is " + (car.isAvailable() ? "available" : "rented")
+                        + " with " + started + " started rental(s)");
+            }
+        }
+
+        for (Map.Entry<String, AtomicInteger> entry : finished.entrySet()) {
+            Rental rental = rentalService.findRentalById(entry.getKey());
+            if (entry.getValue().get() != 1 || rental == null || rental.isActive()) {
+                problems.add("rental " + entry.getKey() + " finished " + entry.getValue() + " time(s) and is "
+                        + (rental == null ? "missing" : rental.getStatus()));
+            }
+        }
+        finished.clear();
+
+        int expectedActive = createdCount.get() - completedCount.get() - cancelledCount.get();
+        if (rentalService.getRentalCount() != createdCount.get()
+                || rentalService.getCompletedRentalCount() != completedCount.get()
+                || rentalService.getActiveRentalCount() != expectedActive) {
+            problems.add("counts: " + rentalService.getRentalCount() + " rentals, "
+                    + rentalService.getCompletedRentalCount() + " completed, " + rentalService.getActiveRentalCount()
+                    + " active; expected " + createdCount + ", " + completedCount + ", " + expectedActive);
+        }
+
+        if (!problems.isEmpty()) {
+            throw new IllegalStateException(problems.size() + " problem(s), first: " + problems.get(0));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(console);
+    }
+
+    // 60% bookings (a quarter of them starting today), 15% completions, 15% cancellations, 10% reads
+    @Benchmark
+    public boolean mixedOperations() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int operation = random.nextInt(100);
+        LocalDate today = LocalDate.now();
+
+        if (operation < 60) {
+            LocalDate start = random.nextInt(4) == 0 ? today : today.plusDays(1 + random.nextInt(60));
+            Rental rental = rentalService.createRental(SyntheticData.customerId(1 + random.nextInt(CUSTOMERS)),
+                    SyntheticData.carId(1 + random.nextInt(CARS)), start, start.plusDays(1 + random.nextInt(5)), 40.0);
+            if (rental == null) {
+                return false;
+            }
+            createdCount.incrementAndGet();
+            (start.equals(today) ? started : reserved).set(random.nextInt(SLOTS), rental.getRentalId());
+            return true;
+        }
+
+        if (operation < 90) {
+            // the id stays in its slot while this thread works on it, so other threads may pick it too
+            AtomicReferenceArray<String> slots = operation < 75 || random.nextBoolean() ? started : reserved;
+            int slot = random.nextInt(SLOTS);
+            String rentalId = slots.get(slot);
+            if (rentalId == null) {
+                return false;
+            }
+            boolean done;
+            if (operation < 75) {
+                done = rentalService.completeRental(rentalId, today);
+                if (done) {
+                    completedCount.incrementAndGet();
+                }
+            } else {
+                done = rentalService.cancelRental(rentalId, "stress test");
+                if (done) {
+                    cancelledCount.incrementAndGet();
+                }
+            }
+            if (done) {
+                finished.computeIfAbsent(rentalId, id -> new AtomicInteger()).incrementAndGet();
+                slots.compareAndSet(slot, rentalId, null);
+            }
+            return done;
+        }
+
+        if (operation < 94) {
+            return !rentalService.getCarsFreeBetween(today, today.plusDays(3)).isEmpty();
+        }
+        if (operation < 98) {
+            return !carService.getAvailableCars().isEmpty();
+        }
+        return rentalService.getRentalStatistics().isEmpty();
+    }
+}
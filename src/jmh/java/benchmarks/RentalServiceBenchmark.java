@@ -0,0 +1,81 @@
+package benchmarks;
+
+import Models.Rental;
+import Services.CarService;
+import Services.CustomerService;
+import Services.RentalService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.PrintStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// bookings, statistics and the overdue list over rental histories of 1K to 10M rentals
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+public class RentalServiceBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int rentals;
+
+    private RentalService rentalService;
+    private int carCount;
+    private int customerCount;
+    private final List<String> created = new ArrayList<>();
+    private PrintStream console;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        console = SyntheticData.silenceConsole();
+        SyntheticData data = SyntheticData.generate(rentals, 42);
+        carCount = data.cars.size();
+        customerCount = data.customers.size();
+        rentalService = new RentalService(data.rentals, new CarService(data.cars), new CustomerService(data.customers));
+    }
+
+    // bookings of one iteration are cancelled and archived, so the calendar does not fill up over the run
+    @TearDown(Level.Iteration)
+    public void cancelCreated() {
+        for (String rentalId : created) {
+            rentalService.cancelRental(rentalId, "benchmark");
+        }
+        created.clear();
+        rentalService.archiveInactiveRentals();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(console);
+    }
+
+    // a few days on a random car some time in the next ten years, a clash with an earlier booking is refused
+    @Benchmark
+    public Rental createRental() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        LocalDate start = LocalDate.now().plusDays(1 + random.nextInt(3650));
+        Rental rental = rentalService.createRental(SyntheticData.customerId(1 + random.nextInt(customerCount)),
+                SyntheticData.carId(1 + random.nextInt(carCount)), start, start.plusDays(1 + random.nextInt(5)), 50.0);
+        if (rental != null) {
+            created.add(rental.getRentalId());
+        }
+        return rental;
+    }
+
+    @Benchmark
+    public Map<String, Object> getRentalStatistics() {
+        return rentalService.getRentalStatistics();
+    }
+
+    @Benchmark
+    public List<Rental> getOverdueRentals() {
+        return rentalService.getOverdueRentals();
+    }
+}
@@ -0,0 +1,78 @@
+package benchmarks;
+
+import Models.Rental;
+import Services.CarService;
+import Services.CustomerService;
+import Services.RentalService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// rentals by status, customer and car over a history of about 1M rentals: 10K active, the rest archived
+// (completed, every 20th cancelled); the counts come from the status index, the lists rebuild their rows
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RentalStatusBenchmark {
+
+    @Param({"1000000"})
+    public int rentals;
+
+    private RentalService rentalService;
+    private int carCount;
+    private int customerCount;
+    private PrintStream console;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        console = SyntheticData.silenceConsole();
+        SyntheticData data = SyntheticData.generate(rentals, 42);
+        carCount = data.cars.size();
+        customerCount = data.customers.size();
+        rentalService = new RentalService(data.rentals, new CarService(data.cars), new CustomerService(data.customers));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(console);
+    }
+
+    @Benchmark
+    public List<Rental> getActiveRentals() {
+        return rentalService.getActiveRentals();
+    }
+
+    @Benchmark
+    public List<Rental> getCompletedRentals() {
+        return rentalService.getCompletedRentals();
+    }
+
+    @Benchmark
+    public int getCompletedRentalCount() {
+        return rentalService.getCompletedRentalCount();
+    }
+
+    @Benchmark
+    public List<Rental> getRentalsByCustomer() {
+        return rentalService.getRentalsByCustomer(
+                SyntheticData.customerId(1 + ThreadLocalRandom.current().nextInt(customerCount)));
+    }
+
+    @Benchmark
+    public List<Rental> getRentalsByCar() {
+        return rentalService.getRentalsByCar(SyntheticData.carId(1 + ThreadLocalRandom.current().nextInt(carCount)));
+    }
+
+    // an archived rental, the lookup goes through the archive's id table
+    @Benchmark
+    public Rental findArchivedRentalById() {
+        return rentalService.findRentalById(SyntheticData.rentalId(rentals / 100 + 1
+                + ThreadLocalRandom.current().nextInt(rentals - rentals / 100)));
+    }
+}
@@ -0,0 +1,131 @@
+package benchmarks;
+
+import Models.Car;
+import Models.CarType;
+import Models.Customer;
+import Models.Rental;
+import Models.RentalStatus;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// a reproducible fleet, customer base and rental history of a given size
+// one car per 20 rentals and one customer per 10, at least 100 of each; 1% of the rentals are still active
+// and a third of those overdue, the rest completed (with every 20th cancelled) over the last ten years
+final class SyntheticData {
+
+    private static final String[] MAKES = {"Toyota", "BMW", "Honda", "Mercedes", "Audi", "Ford", "Mazda", "Skoda"};
+    private static final String[] MODELS = {"Camry", "X5", "Civic", "C-Class", "Q7", "Focus", "CX-5", "Octavia"};
+    private static final CarType[] TYPES = CarType.values();
+
+    final List<Car> cars;
+    final List<Customer> customers;
+    final List<Rental> rentals;
+
+    private SyntheticData(List<Car> cars, List<Customer> customers, List<Rental> rentals) {
+        this.cars = cars;
+        this.customers = customers;
+        this.rentals = rentals;
+    }
+
+    static SyntheticData generate(int rentalCount, long seed) {
+        List<Car> cars = fleet(rentalCount, seed);
+        List<Customer> customers = customers(rentalCount, seed);
+        return new SyntheticData(cars, customers, history(rentalCount, cars, customers.size(), seed));
+    }
+
+    static int carCount(int rentalCount) {
+        return Math.max(100, rentalCount / 20);
+    }
+
+    static int customerCount(int rentalCount) {
+        return Math.max(100, rentalCount / 10);
+    }
+
+    // the fleet alone, for benchmarks that never touch rentals
+    static List<Car> fleet(int rentalCount, long seed) {
+        Random random = new Random(seed);
+        int carCount = carCount(rentalCount);
+        List<Car> cars = new ArrayList<>(carCount);
+        for (int i = 1; i <= carCount; i++) {
+            int model = random.nextInt(MODELS.length);
+            cars.add(new Car(carId(i), MAKES[model], MODELS[model], 2010 + random.nextInt(16),
+                    TYPES[random.nextInt(TYPES.length)].getDisplayName()));
+        }
+        return cars;
+    }
+
+    static List<Customer> customers(int rentalCount, long seed) {
+        Random random = new Random(seed + 1);
+        LocalDate today = LocalDate.now();
+        int customerCount = customerCount(rentalCount);
+        List<Customer> customers = new ArrayList<>(customerCount);
+        for (int i = 1; i <= customerCount; i++) {
+            customers.add(new Customer(customerId(i), "Customer " + i, "customer" + i + "@example.com",
+                    "+359 888 " + String.format("%06d", i % 1_000_000), "BG" + (1_000_000 + i),
+                    today.minusDays(random.nextInt(3650))));
+        }
+        return customers;
+    }
+
+    // the rental history, the cars of the active rentals are marked as rented
+    private static List<Rental> history(int rentalCount, List<Car> cars, int customerCount, long seed) {
+        Random random = new Random(seed + 2);
+        LocalDate today = LocalDate.now();
+
+        // the active rentals go to distinct cars, so the data is consistent with the fleet
+        int activeCount = Math.min(cars.size(), rentalCount / 100);
+        List<Rental> rentals = new ArrayList<>(rentalCount);
+        for (int i = 1; i <= rentalCount; i++) {
+            String customerId = customerId(1 + random.nextInt(customerCount));
+            int days = 1 + random.nextInt(14);
+            double dailyRate = 30 + random.nextInt(120);
+
+            if (i <= activeCount) {
+                Car car = cars.get(i - 1);
+                boolean overdue = i % 3 == 0;
+                LocalDate start = today.minusDays(overdue ? days + 1 + random.nextInt(10) : random.nextInt(days));
+                LocalDate end = start.plusDays(days);
+                car.markRented(customerId, start, end);
+                rentals.add(new Rental(rentalId(i), customerId, car.getId(), start, end, dailyRate));
+                continue;
+            }
+
+            String carId = carId(1 + random.nextInt(cars.size()));
+            LocalDate start = today.minusDays(30 + random.nextInt(3650));
+            LocalDate end = start.plusDays(days);
+            if (i % 20 == 0) {
+                rentals.add(new Rental(rentalId(i), customerId, carId, start, end, null, dailyRate,
+                        days * dailyRate, RentalStatus.CANCELLED, "Cancelled: plans changed"));
+            } else {
+                LocalDate returned = end.plusDays(random.nextInt(10) == 0 ? 1 + random.nextInt(3) : 0);
+                rentals.add(new Rental(rentalId(i), customerId, carId, start, end, returned, dailyRate,
+                        days * dailyRate, RentalStatus.COMPLETED, ""));
+            }
+        }
+        return rentals;
+    }
+
+    static String carId(int number) {
+        return String.format("C%03d", number);
+    }
+
+    static String customerId(int number) {
+        return String.format("CUST%03d", number);
+    }
+
+    static String rentalId(int number) {
+        return String.format("R%03d", number);
+    }
+
+    // the services report every step on System.out, which would flood the benchmark output
+    static PrintStream silenceConsole() {
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        return console;
+    }
+}
@@ -4,8 +4,14 @@ import interfaces.Rentable;
 import interfaces.Searchable;
 
 import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.UnaryOperator;
 
 // car/s in the rental system
+// the rental state is one immutable CarRentalState, replaced by compare-and-set, so reading it never blocks
+// and two threads renting the same car do not wait for each other: one wins, the other retries or is refused
+// the retries and refusals are counted per car, so heavily contended cars show up in the statistics
 
 public class Car implements Rentable, Searchable {
 
@@ -13,22 +19,25 @@ public class Car implements Rentable, Searchable {
     private String make;
     private String model;
     private int year;
-    private String type;
-    private boolean available;
-    private String currentRenter;
-    private LocalDate rentalStartDate;
-    private LocalDate rentalEndDate;
+    private CarType type;
+    private volatile CarRentalState rentalState = CarRentalState.AVAILABLE;
+    private volatile long stateRetries;
+    private volatile long refusedRentals;
+
+    // field updaters instead of an AtomicReference and two AtomicLongs per car
+    private static final AtomicReferenceFieldUpdater<Car, CarRentalState> RENTAL_STATE =
+            AtomicReferenceFieldUpdater.newUpdater(Car.class, CarRentalState.class, "rentalState");
+    private static final AtomicLongFieldUpdater<Car> STATE_RETRIES =
+            AtomicLongFieldUpdater.newUpdater(Car.class, "stateRetries");
+    private static final AtomicLongFieldUpdater<Car> REFUSED_RENTALS =
+            AtomicLongFieldUpdater.newUpdater(Car.class, "refusedRentals");
 
     public Car(String id, String make, String model, int year, String type) {
         this.id = id;
         this.make = make;
         this.model = model;
         this.year = year;
-        this.type = type;
-        this.available = true;
-        this.currentRenter = null;
-        this.rentalStartDate = null;
-        this.rentalEndDate = null;
+        this.type = parseType(type);
     }
 
     public String getId() {
@@ -63,21 +72,43 @@ public class Car implements Rentable, Searchable {
         this.year = year;
     }
 
+    // display name of the type, as shown and written to the data file
     public String getType() {
+        return type != null ? type.getDisplayName() : null;
+    }
+
+    public CarType getCarType() {
         return type;
     }
 
     public void setType(String type) {
+        this.type = parseType(type);
+    }
+
+    public void setType(CarType type) {
         this.type = type;
     }
 
+    // a missing type is allowed, an unknown one is rejected
+    private static CarType parseType(String type) {
+        if (type == null) {
+            return null;
+        }
+        CarType carType = CarType.fromString(type);
+        if (carType == null) {
+            throw new IllegalArgumentException("Unknown car type: " + type);
+        }
+        return carType;
+    }
+
+    // a car set to rented keeps its renter if it already had one
     public void setAvailable(boolean available) {
-        this.available = available;
+        update(state -> available ? CarRentalState.AVAILABLE : state.isAvailable() ? CarRentalState.RENTED : state);
     }
 
     @Override
     public boolean rent(String customerId, LocalDate startDate, LocalDate endDate) {
-        if (!available || customerId == null || startDate == null || endDate == null) {
+        if (customerId == null || startDate == null || endDate == null) {
             return false;
         }
 
@@ -85,44 +116,81 @@ public class Car implements Rentable, Searchable {
             return false;
         }
 
-        this.available = false;
-        this.currentRenter = customerId;
-        this.rentalStartDate = startDate;
-        this.rentalEndDate = endDate;
-        return true;
+        if (markRented(customerId, startDate, endDate)) {
+            return true;
+        }
+        REFUSED_RENTALS.incrementAndGet(this);
+        return false;
+    }
+
+    // hands the car over for a rental that has already started, e.g. a reservation whose start date has come
+    // false if the car is not available
+    public boolean markRented(String customerId, LocalDate startDate, LocalDate endDate) {
+        CarRentalState rented = CarRentalState.rentedTo(customerId, startDate, endDate);
+        return update(state -> state.isAvailable() ? rented : null);
     }
 
     @Override
     public boolean returnItem() {
-        if (available) {
-            return false;
+        return update(state -> state.isAvailable() ? null : CarRentalState.AVAILABLE);
+    }
+
+    // returns the car only if it is out on the given customer's rental that started on the given day,
+    // so a late or repeated return cannot take the car away from the next renter
+    public boolean returnItem(String customerId, LocalDate startDate) {
+        return update(state -> state.isRentalOf(customerId, startDate) ? CarRentalState.AVAILABLE : null);
+    }
+
+    // swaps in the state the change gives for the current one, retrying if another thread swapped first
+    // the change returns null if it does not apply to the current state
+    private boolean update(UnaryOperator<CarRentalState> change) {
+        CarRentalState current = rentalState;
+        while (true) {
+            CarRentalState next = change.apply(current);
+            if (next == null) {
+                return false;
+            }
+            if (next == current || RENTAL_STATE.compareAndSet(this, current, next)) {
+                return true;
+            }
+            STATE_RETRIES.incrementAndGet(this);
+            current = rentalState;
         }
+    }
+
+    // one consistent snapshot of availability, renter and dates
+    public CarRentalState getRentalState() {
+        return rentalState;
+    }
 
-        this.available = true;
-        this.currentRenter = null;
-        this.rentalStartDate = null;
-        this.rentalEndDate = null;
-        return true;
+    // how often a state change lost a race and had to be retried
+    public long getStateRetries() {
+        return stateRetries;
+    }
+
+    // how often rent found the car already taken
+    public long getRefusedRentals() {
+        return refusedRentals;
     }
 
     @Override
     public boolean isAvailable() {
-        return available;
+        return rentalState.isAvailable();
     }
 
     @Override
     public String getCurrentRenter() {
-        return currentRenter;
+        return rentalState.getRenter();
     }
 
     @Override
     public LocalDate getRentalStartDate() {
-        return rentalStartDate;
+        return rentalState.getStartDate();
     }
 
     @Override
     public LocalDate getRentalEndDate() {
-        return rentalEndDate;
+        return rentalState.getEndDate();
     }
 
     @Override
@@ -137,8 +205,7 @@ public class Car implements Rentable, Searchable {
 
     @Override
     public boolean matchesStatus(String status) {
-        String currentStatus = available ? "Available" : "Rented";
-        return currentStatus.equalsIgnoreCase(status);
+        return getCarStatus() == CarStatus.fromString(status);
     }
 
     @Override
@@ -156,26 +223,36 @@ public class Car implements Rentable, Searchable {
         return (id != null && id.toLowerCase().contains(term)) ||
                 (make != null && make.toLowerCase().contains(term)) ||
                 (model != null && model.toLowerCase().contains(term)) ||
-                (type != null && type.toLowerCase().contains(term)) ||
+                (type != null && type.getDisplayName().toLowerCase().contains(term)) ||
                 String.valueOf(year).contains(term);
     }
 
     // check if car is available or not
     public String getStatus() {
-        return available ? "Available" : "Rented";
+        return getCarStatus().getDisplayName();
+    }
+
+    public CarStatus getCarStatus() {
+        return rentalState.isAvailable() ? CarStatus.AVAILABLE : CarStatus.RENTED;
     }
 
     @Override
     public String toString() {
+        CarRentalState state = rentalState;
         return String.format("ID: %s | %s %s (%d) | Type: %s | Status: %s%s",
-                id, make, model, year, type, getStatus(),
-                currentRenter != null ? " | Renter: " + currentRenter : "");
+                id, make, model, year, type, status(state),
+                state.getRenter() != null ? " | Renter: " + state.getRenter() : "");
     }
 
     // creates a csv representation for file purposes
     public String toCSV() {
+        CarRentalState state = rentalState;
         return String.format("%s,%s,%s,%d,%s,%s,%s",
-                id, make, model, year, type, getStatus(),
-                currentRenter != null ? currentRenter : "");
+                id, make, model, year, type, status(state),
+                state.getRenter() != null ? state.getRenter() : "");
+    }
+
+    private static String status(CarRentalState state) {
+        return (state.isAvailable() ? CarStatus.AVAILABLE : CarStatus.RENTED).getDisplayName();
     }
 }
\ No newline at end of file
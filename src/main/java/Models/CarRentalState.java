@@ -0,0 +1,56 @@
+package Models;
+
+import java.time.LocalDate;
+
+// the rental side of a car (available, renter, dates) as one immutable value
+// a car swaps the whole value at once, so a reader never sees the renter of one rental with the dates of another
+public final class CarRentalState {
+
+    public static final CarRentalState AVAILABLE = new CarRentalState(true, null, null, null);
+    // rented, but the data file did not say to whom
+    public static final CarRentalState RENTED = new CarRentalState(false, null, null, null);
+
+    private final boolean available;
+    private final String renter;
+    private final LocalDate startDate;
+    private final LocalDate endDate;
+
+    private CarRentalState(boolean available, String renter, LocalDate startDate, LocalDate endDate) {
+        this.available = available;
+        this.renter = renter;
+        this.startDate = startDate;
+        this.endDate = endDate;
+    }
+
+    public static CarRentalState rentedTo(String renter, LocalDate startDate, LocalDate endDate) {
+        return new CarRentalState(false, renter, startDate, endDate);
+    }
+
+    public boolean isAvailable() {
+        return available;
+    }
+
+    public String getRenter() {
+        return renter;
+    }
+
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    public LocalDate getEndDate() {
+        return endDate;
+    }
+
+    // true if this is the rental of the given customer that started on the given day
+    // a rented state without a renter belongs to whichever rental claims it
+    public boolean isRentalOf(String customerId, LocalDate startDate) {
+        if (available) {
+            return false;
+        }
+        if (renter == null) {
+            return true;
+        }
+        return renter.equals(customerId) && (this.startDate == null || this.startDate.equals(startDate));
+    }
+}
@@ -0,0 +1,38 @@
+package Models;
+
+// whether a car can be rented right now, written to the data file by display name
+public enum CarStatus {
+    AVAILABLE("Available"),
+    RENTED("Rented");
+
+    private static final CarStatus[] VALUES = values();
+
+    private final String displayName;
+
+    CarStatus(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    // matches the display name ignoring case, returns null for anything else
+    public static CarStatus fromString(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        for (CarStatus status : VALUES) {
+            if (status.displayName.equalsIgnoreCase(trimmed)) {
+                return status;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
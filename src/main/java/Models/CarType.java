@@ -0,0 +1,43 @@
+package Models;
+
+// body types a car can have, written to the data file by display name
+public enum CarType {
+    SEDAN("Sedan"),
+    SUV("SUV"),
+    HATCHBACK("Hatchback"),
+    COUPE("Coupe"),
+    CONVERTIBLE("Convertible"),
+    WAGON("Wagon"),
+    PICKUP("Pickup");
+
+    private static final CarType[] VALUES = values();
+
+    private final String displayName;
+
+    CarType(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    // matches the display name ignoring case, returns null for anything else
+    public static CarType fromString(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        for (CarType type : VALUES) {
+            if (type.displayName.equalsIgnoreCase(trimmed)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
@@ -138,23 +138,6 @@ public class Customer {
         return null;
     }
 
-    // generates an unique customer id
-    public static String generateCustomerId(java.util.List<Customer> existingCustomers) {
-        int maxId = 0;
-        for (Customer customer : existingCustomers) {
-            try {
-                String idNum = customer.getCustomerId().replaceAll("[^0-9]", "");
-                if (!idNum.isEmpty()) {
-                    int id = Integer.parseInt(idNum);
-                    maxId = Math.max(maxId, id);
-                }
-            } catch (NumberFormatException e) {
-                // ignore invalid id's
-            }
-        }
-        return "CUST" + String.format("%03d", maxId + 1);
-    }
-
     // check if two customer are same by id
     @Override
     public boolean equals(Object obj) {
@@ -13,7 +13,7 @@ public class Rental {
     private LocalDate actualReturnDate;
     private double dailyRate;
     private double totalCost;
-    private String status; // // active , completed or cancelled
+    private RentalStatus status;
     private String notes;
 
     public Rental(String rentalId, String customerId, String carId,
@@ -24,7 +24,7 @@ public class Rental {
         this.startDate = startDate;
         this.endDate = endDate;
         this.dailyRate = dailyRate;
-        this.status = "ACTIVE";
+        this.status = RentalStatus.ACTIVE;
         this.actualReturnDate = null;
         this.notes = "";
         calculateTotalCost();
@@ -33,6 +33,13 @@ public class Rental {
     public Rental(String rentalId, String customerId, String carId,
                   LocalDate startDate, LocalDate endDate, LocalDate actualReturnDate,
                   double dailyRate, double totalCost, String status, String notes) {
+        this(rentalId, customerId, carId, startDate, endDate, actualReturnDate, dailyRate, totalCost,
+                parseStatus(status), notes);
+    }
+
+    public Rental(String rentalId, String customerId, String carId,
+                  LocalDate startDate, LocalDate endDate, LocalDate actualReturnDate,
+                  double dailyRate, double totalCost, RentalStatus status, String notes) {
         this.rentalId = rentalId;
         this.customerId = customerId;
         this.carId = carId;
@@ -111,14 +118,35 @@ public class Rental {
         return totalCost;
     }
 
+    // name of the status, as shown and written to the data file
     public String getStatus() {
+        return status != null ? status.name() : null;
+    }
+
+    public RentalStatus getRentalStatus() {
         return status;
     }
 
     public void setStatus(String status) {
+        this.status = parseStatus(status);
+    }
+
+    public void setStatus(RentalStatus status) {
         this.status = status;
     }
 
+    // a missing status is allowed, an unknown one is rejected
+    private static RentalStatus parseStatus(String status) {
+        if (status == null) {
+            return null;
+        }
+        RentalStatus rentalStatus = RentalStatus.fromString(status);
+        if (rentalStatus == null) {
+            throw new IllegalArgumentException("Unknown rental status: " + status);
+        }
+        return rentalStatus;
+    }
+
     public String getNotes() {
         return notes;
     }
@@ -168,41 +196,50 @@ public class Rental {
 
     // updates status of the car
     public boolean completeRental(LocalDate returnDate) {
-        if (!"ACTIVE".equals(status)) {
+        if (status != RentalStatus.ACTIVE) {
             return false;
         }
 
         this.actualReturnDate = returnDate;
-        this.status = "COMPLETED";
+        this.status = RentalStatus.COMPLETED;
         calculateActualCost();
         return true;
     }
 
     // cancels the rental
     public boolean cancelRental(String reason) {
-        if ("COMPLETED".equals(status)) {
+        if (status == RentalStatus.COMPLETED) {
             return false;
         }
 
-        this.status = "CANCELLED";
+        this.status = RentalStatus.CANCELLED;
         this.notes = reason != null ? reason : "Cancelled";
         return true;
     }
 
     // checks if car is active
     public boolean isActive() {
-        return "ACTIVE".equals(status);
+        return status == RentalStatus.ACTIVE;
     }
 
     // checks if rental is overdue
     public boolean isOverdue() {
-        return isActive() && LocalDate.now().isAfter(endDate);
+        return isOverdue(LocalDate.now());
+    }
+
+    // checks if rental is overdue on the given day, lets callers check many rentals against one date
+    public boolean isOverdue(LocalDate today) {
+        return isActive() && today.isAfter(endDate);
     }
 
     // checks how many days is the overdue
     public long getDaysOverdue() {
-        if (!isOverdue()) return 0;
-        return ChronoUnit.DAYS.between(endDate, LocalDate.now());
+        return getDaysOverdue(LocalDate.now());
+    }
+
+    public long getDaysOverdue(LocalDate today) {
+        if (!isOverdue(today)) return 0;
+        return ChronoUnit.DAYS.between(endDate, today);
     }
 
     @Override
@@ -243,21 +280,4 @@ public class Rental {
         }
         return null;
     }
-
-    // generates a unique rental id
-    public static String generateRentalId(java.util.List<Rental> existingRentals) {
-        int maxId = 0;
-        for (Rental rental : existingRentals) {
-            try {
-                String idNum = rental.getRentalId().replaceAll("[^0-9]", "");
-                if (!idNum.isEmpty()) {
-                    int id = Integer.parseInt(idNum);
-                    maxId = Math.max(maxId, id);
-                }
-            } catch (NumberFormatException e) {
-                // ignore invalid id's
-            }
-        }
-        return "R" + String.format("%03d", maxId + 1);
-    }
 }
\ No newline at end of file
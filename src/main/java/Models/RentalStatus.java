@@ -0,0 +1,26 @@
+package Models;
+
+// lifecycle of a rental, written to the data file by name (ACTIVE, COMPLETED, CANCELLED)
+public enum RentalStatus {
+    ACTIVE,
+    COMPLETED,
+    CANCELLED;
+
+    // values() copies the array on every call, so the enums keep one copy for their lookups
+    // shared with the file reader and the archive, which index it by ordinal; never written to
+    public static final RentalStatus[] VALUES = values();
+
+    // matches the name ignoring case, returns null for anything else
+    public static RentalStatus fromString(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        for (RentalStatus status : VALUES) {
+            if (status.name().equalsIgnoreCase(trimmed)) {
+                return status;
+            }
+        }
+        return null;
+    }
+}
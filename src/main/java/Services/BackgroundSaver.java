@@ -0,0 +1,198 @@
+package Services;
+
+import Utils.ChangeTracker;
+import Utils.FileHandler;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// persists the changes of all services on a background thread
+// changes are collected for one batch window and then written to the journal with a single fsync,
+// once the journal is long enough a full snapshot replaces it, so it never grows without bound
+public class BackgroundSaver {
+
+    private final CarService carService;
+    private final CustomerService customerService;
+    private final RentalService rentalService;
+    private final FileHandler fileHandler;
+    private final long batchWindowMillis;
+    private Thread thread;
+    private volatile boolean running;
+    // the thread waits on this between batches and stop() wakes it up; it is never interrupted,
+    // an interrupt inside a channel write would close the journal file
+    private final Object wakeUp = new Object();
+
+    // everything up to this change position is on disk
+    private final Object durableLock = new Object();
+    private long durablePosition;
+
+    // flush metrics
+    private long flushCount;
+    private long flushedChanges;
+    private long totalFlushNanos;
+    private long maxFlushNanos;
+    private long lastFlushNanos;
+    private long snapshotCount;
+
+    public BackgroundSaver(CarService carService, CustomerService customerService, RentalService rentalService,
+                           FileHandler fileHandler, long batchWindowMillis) {
+        this.carService = carService;
+        this.customerService = customerService;
+        this.rentalService = rentalService;
+        this.fileHandler = fileHandler;
+        this.batchWindowMillis = batchWindowMillis;
+        // changes still pending from before (e.g. after a reset or restore) are not on disk yet
+        this.durablePosition = ChangeTracker.positionBeforePending(carService.getChangeTracker(),
+                customerService.getChangeTracker(), rentalService.getChangeTracker());
+    }
+
+    public void start() {
+        running = true;
+        thread = new Thread(this::run, "background-saver");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // stops the thread after writing whatever is still pending, false if that last write failed
+    public boolean stop() {
+        synchronized (wakeUp) {
+            running = false;
+            wakeUp.notifyAll();
+        }
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return flush();
+    }
+
+    private void run() {
+        while (true) {
+            synchronized (wakeUp) {
+                long deadline = System.currentTimeMillis() + batchWindowMillis;
+                long remaining = batchWindowMillis;
+                while (running && remaining > 0) {
+                    try {
+                        wakeUp.wait(remaining);
+                    } catch (InterruptedException e) {
+                        // nobody interrupts this thread, the final flush happens in stop()
+                        return;
+                    }
+                    remaining = deadline - System.currentTimeMillis();
+                }
+                if (!running) {
+                    return;
+                }
+            }
+            if (flush() && fileHandler.isSnapshotDue()) {
+                writeSnapshot();
+            }
+        }
+    }
+
+    // writes all pending changes as one batch right away, returns false if the write failed
+    public synchronized boolean flush() {
+        ChangeTracker.Batch batch = ChangeTracker.drainAll(carService.getChangeTracker(),
+                customerService.getChangeTracker(), rentalService.getChangeTracker());
+
+        boolean success = true;
+        if (batch.size() > 0) {
+            long start = System.nanoTime();
+            success = fileHandler.writeChanges(batch.getAllChanges());
+            long elapsed = System.nanoTime() - start;
+
+            if (!success) {
+                carService.getChangeTracker().requeue(batch.getChanges(0));
+                customerService.getChangeTracker().requeue(batch.getChanges(1));
+                rentalService.getChangeTracker().requeue(batch.getChanges(2));
+                return false;
+            }
+
+            flushCount++;
+            flushedChanges += batch.size();
+            totalFlushNanos += elapsed;
+            maxFlushNanos = Math.max(maxFlushNanos, elapsed);
+            lastFlushNanos = elapsed;
+        }
+
+        markDurable(batch.getPosition());
+        return success;
+    }
+
+    // journals what is pending and writes a full snapshot, which starts a new journal
+    // changes made while the snapshot is written stay pending and go to the new journal;
+    // replaying them on top of a snapshot that already has them gives the same records
+    public synchronized boolean writeSnapshot() {
+        flush();
+        boolean written = fileHandler.writeAllData(carService.getAllCars(), customerService.getAllCustomers(),
+                rentalService.getAllRentals());
+        if (written) {
+            fileHandler.writeIdSequences(carService.getIdSequence(), customerService.getIdSequence(),
+                    rentalService.getIdSequence());
+            snapshotCount++;
+        }
+        return written;
+    }
+
+    private void markDurable(long position) {
+        synchronized (durableLock) {
+            if (position > durablePosition) {
+                durablePosition = position;
+                durableLock.notifyAll();
+            }
+        }
+    }
+
+    // position of the latest change made through any service
+    public long getCurrentPosition() {
+        return ChangeTracker.currentPosition();
+    }
+
+    public long getDurablePosition() {
+        synchronized (durableLock) {
+            return durablePosition;
+        }
+    }
+
+    // blocks until everything up to the given position is on disk, false on timeout
+    public boolean awaitDurable(long position, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (durableLock) {
+            while (durablePosition < position) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                durableLock.wait(remaining);
+            }
+            return true;
+        }
+    }
+
+    // number of changed entities waiting for the next batch
+    public int getQueueDepth() {
+        return carService.getPendingChangeCount() + customerService.getPendingChangeCount()
+                + rentalService.getPendingChangeCount();
+    }
+
+    // gets queue and flush latency metrics
+    public synchronized Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+
+        metrics.put("queueDepth", getQueueDepth());
+        metrics.put("currentPosition", getCurrentPosition());
+        metrics.put("durablePosition", getDurablePosition());
+        metrics.put("flushCount", flushCount);
+        metrics.put("flushedChanges", flushedChanges);
+        metrics.put("lastFlushMillis", lastFlushNanos / 1_000_000.0);
+        metrics.put("maxFlushMillis", maxFlushNanos / 1_000_000.0);
+        metrics.put("averageFlushMillis", flushCount > 0 ? totalFlushNanos / 1_000_000.0 / flushCount : 0.0);
+        metrics.put("batchWindowMillis", batchWindowMillis);
+        metrics.put("snapshotCount", snapshotCount);
+
+        return metrics;
+    }
+}
@@ -0,0 +1,343 @@
+package Services;
+
+import Models.Car;
+import Models.Customer;
+import Models.Rental;
+import Utils.IdSequence;
+import Utils.InputValidator;
+import Utils.Json;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// runs commands without menus, one per line, against the services:
+//   ADD_CAR,<id or empty>,make,model,year,type
+//   ADD_CUSTOMER,<id or empty>,name,email,phone,license
+//   CREATE_RENTAL,customerId,carId,startDate,endDate[,dailyRate]
+//   COMPLETE_RENTAL,rentalId[,returnDate]
+//   CANCEL_RENTAL,rentalId[,reason]
+// dates are yyyy-MM-dd, "today" or "+N" (N days from today); empty lines and lines starting with # are skipped
+// every command gives one JSON line, a summary line with the throughput follows at the end
+// commands are read in blocks, the ids of a block's ADD_CAR and ADD_CUSTOMER lines without an id are reserved at once
+public class BatchRunner {
+
+    // most lines read ahead; fewer when the input has nothing more buffered, so piped commands are not held back
+    private static final int BLOCK_LINES = 1024;
+
+    public enum Command { ADD_CAR, ADD_CUSTOMER, CREATE_RENTAL, COMPLETE_RENTAL, CANCEL_RENTAL }
+
+    // outcome of one command, id is the car, customer or rental it created or changed
+    public static class Result {
+        private final Command command;
+        private final boolean ok;
+        private final String id;
+        private final String error;
+
+        Result(Command command, boolean ok, String id, String error) {
+            this.command = command;
+            this.ok = ok;
+            this.id = id;
+            this.error = error;
+        }
+
+        public Command getCommand() {
+            return command;
+        }
+
+        public boolean isOk() {
+            return ok;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public String toJson(int lineNumber, long micros) {
+            StringBuilder json = new StringBuilder(96).append("{\"line\":").append(lineNumber)
+                    .append(",\"command\":").append(command != null ? Json.quote(command.name()) : "null")
+                    .append(",\"ok\":").append(ok);
+            if (id != null) {
+                json.append(",\"id\":").append(Json.quote(id));
+            }
+            if (error != null) {
+                json.append(",\"error\":").append(Json.quote(error));
+            }
+            return json.append(",\"micros\":").append(micros).append('}').toString();
+        }
+    }
+
+    // totals of one run
+    public static class Summary {
+        private int commands;
+        private int succeeded;
+        private long elapsedNanos;
+        private final Map<Command, int[]> byCommand = new EnumMap<>(Command.class);
+
+        private void add(Result result) {
+            commands++;
+            if (result.isOk()) {
+                succeeded++;
+            }
+            if (result.getCommand() != null) {
+                int[] counts = byCommand.computeIfAbsent(result.getCommand(), k -> new int[2]);
+                counts[result.isOk() ? 0 : 1]++;
+            }
+        }
+
+        public int getCommands() {
+            return commands;
+        }
+
+        public int getSucceeded() {
+            return succeeded;
+        }
+
+        public int getFailed() {
+            return commands - succeeded;
+        }
+
+        public double getCommandsPerSecond() {
+            return elapsedNanos > 0 ? commands * 1_000_000_000.0 / elapsedNanos : 0.0;
+        }
+
+        public String toJson() {
+            StringBuilder json = new StringBuilder(256).append("{\"summary\":true")
+                    .append(",\"commands\":").append(commands)
+                    .append(",\"succeeded\":").append(succeeded)
+                    .append(",\"failed\":").append(getFailed())
+                    .append(",\"elapsedMillis\":").append(elapsedNanos / 1_000_000)
+                    .append(",\"commandsPerSecond\":").append(String.format(Locale.ROOT, "%.1f", getCommandsPerSecond()))
+                    .append(",\"byCommand\":{");
+            boolean first = true;
+            for (Map.Entry<Command, int[]> entry : byCommand.entrySet()) {
+                if (!first) {
+                    json.append(',');
+                }
+                first = false;
+                json.append(Json.quote(entry.getKey().name())).append(":{\"succeeded\":").append(entry.getValue()[0])
+                        .append(",\"failed\":").append(entry.getValue()[1]).append('}');
+            }
+            return json.append("}}").toString();
+        }
+    }
+
+    private final CarService carService;
+    private final CustomerService customerService;
+    private final RentalService rentalService;
+    private final IdBlock carIds = new IdBlock();
+    private final IdBlock customerIds = new IdBlock();
+
+    public BatchRunner(CarService carService, CustomerService customerService, RentalService rentalService) {
+        this.carService = carService;
+        this.customerService = customerService;
+        this.rentalService = rentalService;
+    }
+
+    // runs every command from the reader and writes the results to out
+    public Summary run(BufferedReader in, PrintStream out) throws IOException {
+        Summary summary = new Summary();
+        long start = System.nanoTime();
+        try {
+            List<String> block = new ArrayList<>(BLOCK_LINES);
+            int lineNumber = 0;
+            while (readBlock(in, block)) {
+                reserveIds(block);
+                for (String line : block) {
+                    lineNumber++;
+                    if (line.isBlank() || line.trim().startsWith("#")) {
+                        continue;
+                    }
+
+                    long commandStart = System.nanoTime();
+                    Result result = execute(line);
+                    long micros = (System.nanoTime() - commandStart) / 1_000;
+
+                    summary.add(result);
+                    out.println(result.toJson(lineNumber, micros));
+                }
+                out.flush();
+            }
+        } finally {
+            summary.elapsedNanos = System.nanoTime() - start;
+        }
+
+        out.println(summary.toJson());
+        out.flush();
+        return summary;
+    }
+
+    // reads the next lines into block, false at the end of the input
+    private static boolean readBlock(BufferedReader in, List<String> block) throws IOException {
+        block.clear();
+        String line;
+        while (block.size() < BLOCK_LINES && (block.isEmpty() || in.ready()) && (line = in.readLine()) != null) {
+            block.add(line);
+        }
+        return !block.isEmpty();
+    }
+
+    // reserves one id per complete ADD_CAR or ADD_CUSTOMER line that leaves the id empty
+    // the explicit ids of the block are observed first, so no reserved id is one of them
+    private void reserveIds(List<String> block) {
+        int cars = 0;
+        int customers = 0;
+        for (String line : block) {
+            String[] fields = line.split(",", -1);
+            if (fields.length < 6) {
+                continue;
+            }
+            String command = fields[0].trim();
+            String id = fields[1].trim();
+            if (command.equalsIgnoreCase(Command.ADD_CAR.name())) {
+                if (id.isEmpty()) {
+                    cars++;
+                } else {
+                    carService.getIdSequence().observe(id);
+                }
+            } else if (command.equalsIgnoreCase(Command.ADD_CUSTOMER.name())) {
+                if (id.isEmpty()) {
+                    customers++;
+                } else {
+                    customerService.getIdSequence().observe(id);
+                }
+            }
+        }
+        carIds.reserve(carService.getIdSequence(), cars);
+        customerIds.reserve(customerService.getIdSequence(), customers);
+    }
+
+    // runs one command line, a failed command carries the reason the service gave
+    public Result execute(String line) {
+        String[] fields = line.split(",", -1);
+        Command command;
+        try {
+            command = Command.valueOf(fields[0].trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return new Result(null, false, null, "Unknown command: " + fields[0].trim());
+        }
+
+        try {
+            switch (command) {
+                case ADD_CAR:
+                    return addCar(fields);
+                case ADD_CUSTOMER:
+                    return addCustomer(fields);
+                case CREATE_RENTAL:
+                    return createRental(fields);
+                case COMPLETE_RENTAL:
+                    return completeRental(fields);
+                default:
+                    return cancelRental(line, fields);
+            }
+        } catch (IllegalArgumentException | DateTimeException | ArithmeticException e) {
+            // bad numbers and dates, including a "+N" too far out for a date
+            return new Result(command, false, null, e.getMessage());
+        }
+    }
+
+    private Result addCar(String[] fields) {
+        require(fields, 6, "ADD_CAR,<id or empty>,make,model,year,type");
+        String carId = fields[1].trim().isEmpty() ? carIds.next(carService.getIdSequence()) : fields[1].trim();
+        Car car = new Car(carId, fields[2].trim(), fields[3].trim(), Integer.parseInt(fields[4].trim()), fields[5].trim());
+        return result(Command.ADD_CAR, carService.tryAddCar(car), carId);
+    }
+
+    private Result addCustomer(String[] fields) {
+        require(fields, 6, "ADD_CUSTOMER,<id or empty>,name,email,phone,license");
+        String customerId = fields[1].trim().isEmpty() ? customerIds.next(customerService.getIdSequence()) : fields[1].trim();
+        Customer customer = new Customer(customerId, fields[2].trim(), fields[3].trim(), fields[4].trim(), fields[5].trim());
+        return result(Command.ADD_CUSTOMER, customerService.tryAddCustomer(customer), customerId);
+    }
+
+    private Result createRental(String[] fields) {
+        require(fields, 5, "CREATE_RENTAL,customerId,carId,startDate,endDate[,dailyRate]");
+        double dailyRate = parseDailyRate(fields.length > 5 ? fields[5] : "");
+        Outcome<Rental> outcome = rentalService.tryCreateRental(fields[1].trim(), fields[2].trim(),
+                parseDate(fields[3]), parseDate(fields[4]), dailyRate);
+        return result(Command.CREATE_RENTAL, outcome, outcome.isOk() ? outcome.getValue().getRentalId() : null);
+    }
+
+    private Result completeRental(String[] fields) {
+        require(fields, 2, "COMPLETE_RENTAL,rentalId[,returnDate]");
+        LocalDate returnDate = fields.length > 2 && !fields[2].trim().isEmpty() ? parseDate(fields[2]) : LocalDate.now();
+        String rentalId = fields[1].trim();
+        return result(Command.COMPLETE_RENTAL, rentalService.tryCompleteRental(rentalId, returnDate), rentalId);
+    }
+
+    private Result cancelRental(String line, String[] fields) {
+        require(fields, 2, "CANCEL_RENTAL,rentalId[,reason]");
+        // the reason is everything after the id, commas included
+        String reason = fields.length > 2 ? line.substring(line.indexOf(',', line.indexOf(',') + 1) + 1).trim() : "";
+        String rentalId = fields[1].trim();
+        return result(Command.CANCEL_RENTAL, rentalService.tryCancelRental(rentalId, reason), rentalId);
+    }
+
+    private static Result result(Command command, Outcome<?> outcome, String id) {
+        return new Result(command, outcome.isOk(), id, outcome.getError());
+    }
+
+    private static void require(String[] fields, int count, String usage) {
+        if (fields.length < count) {
+            throw new IllegalArgumentException("Expected " + usage);
+        }
+    }
+
+    // yyyy-MM-dd, "today" or "+N" days from today
+    static LocalDate parseDate(String value) {
+        String date = value.trim();
+        if (date.equalsIgnoreCase("today")) {
+            return LocalDate.now();
+        }
+        if (date.startsWith("+")) {
+            long days = Long.parseLong(date.substring(1));
+            try {
+                return LocalDate.now().plusDays(days);
+            } catch (DateTimeException | ArithmeticException e) {
+                throw new IllegalArgumentException("Date out of range: " + date);
+            }
+        }
+        return LocalDate.parse(date);
+    }
+
+    // a positive amount, empty for the default rate
+    static double parseDailyRate(String value) {
+        String rate = value.trim();
+        if (rate.isEmpty()) {
+            return RentalService.DEFAULT_DAILY_RATE;
+        }
+        double dailyRate = Double.parseDouble(rate);
+        if (!InputValidator.isValidDailyRate(dailyRate)) {
+            throw new IllegalArgumentException("Daily rate must be a positive amount: " + rate);
+        }
+        return dailyRate;
+    }
+
+    // numbers reserved for the current block, ids of commands that fail are skipped like those from next()
+    private static class IdBlock {
+        private long next;
+        private long end;
+
+        // ids left over from the previous block are dropped, an explicit id of this block may be one of them
+        void reserve(IdSequence sequence, int count) {
+            next = count > 0 ? sequence.reserve(count) : 0;
+            end = next + count;
+        }
+
+        // a reserved id, or a fresh one from the sequence once the block is used up (e.g. execute without run)
+        String next(IdSequence sequence) {
+            return next < end ? sequence.format(next++) : sequence.next();
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package Services;
+
+import Models.Car;
+import Models.CarType;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Predicate;
+
+// gives every car a slot number and keeps one bitset per facet value (availability, make, type, model year)
+// filters become bitset ANDs and counts come from cardinality()
+// everything but availability changes under the exclusive lock of CarService; availability flips on every
+// rental and return, so it is set by compare-and-set and only needs the shared lock
+class CarFacetIndex {
+
+    private final List<Car> slots = new ArrayList<>();
+    private final Map<Car, Integer> slotOf = new IdentityHashMap<>();
+    private final BitSet live = new BitSet();
+    private final AtomicBits available = new AtomicBits();
+    private final Map<String, BitSet> byMake = new HashMap<>();
+    private final Map<CarType, BitSet> byType = new EnumMap<>(CarType.class);
+    private final TreeMap<Integer, BitSet> byYear = new TreeMap<>();
+
+    void add(Car car) {
+        if (slotOf.containsKey(car)) {
+            return;
+        }
+
+        // slots are handed out in insertion order, so results keep the order of the car list
+        int slot = slots.size();
+        slots.add(car);
+        slotOf.put(car, slot);
+        live.set(slot);
+        indexFields(car, slot);
+        available.ensureCapacity(slot + 1);
+        available.set(slot, car.isAvailable());
+    }
+
+    void remove(Car car) {
+        Integer slot = slotOf.remove(car);
+        if (slot == null) {
+            return;
+        }
+
+        unindexFields(slot);
+        live.clear(slot);
+        available.set(slot, false);
+        slots.set(slot, null);
+    }
+
+    // call after make, type or year of a car have changed
+    void update(Car car) {
+        Integer slot = slotOf.get(car);
+        if (slot == null) {
+            return;
+        }
+
+        unindexFields(slot);
+        indexFields(car, slot);
+        available.set(slot, car.isAvailable());
+    }
+
+    void updateAvailability(Car car) {
+        Integer slot = slotOf.get(car);
+        if (slot != null) {
+            available.set(slot, car.isAvailable());
+        }
+    }
+
+    private void indexFields(Car car, int slot) {
+        byMake.computeIfAbsent(car.getMake(), k -> new BitSet()).set(slot);
+        if (car.getCarType() != null) {
+            byType.computeIfAbsent(car.getCarType(), k -> new BitSet()).set(slot);
+        }
+        byYear.computeIfAbsent(car.getYear(), k -> new BitSet()).set(slot);
+    }
+
+    // the number of distinct makes, types and years is small, so clearing the bit everywhere is cheap
+    private void unindexFields(int slot) {
+        clearSlot(byMake.values(), slot);
+        clearSlot(byType.values(), slot);
+        clearSlot(byYear.values(), slot);
+        byMake.values().removeIf(BitSet::isEmpty);
+        byType.values().removeIf(BitSet::isEmpty);
+        byYear.values().removeIf(BitSet::isEmpty);
+    }
+
+    private static void clearSlot(Collection<BitSet> bitSets, int slot) {
+        for (BitSet bitSet : bitSets) {
+            bitSet.clear(slot);
+        }
+    }
+
+    // a bitset with only the slot of the given car
+    BitSet of(Car car) {
+        BitSet bitSet = new BitSet();
+        Integer slot = slotOf.get(car);
+        if (slot != null) {
+            bitSet.set(slot);
+        }
+        return bitSet;
+    }
+
+    BitSet all() {
+        return copy(live);
+    }
+
+    BitSet available() {
+        return available.toBitSet();
+    }
+
+    BitSet rented() {
+        BitSet rented = all();
+        rented.andNot(available.toBitSet());
+        return rented;
+    }
+
+    // cars whose make equals the given make, ignoring case
+    BitSet withMake(String make) {
+        return union(byMake, value -> value != null && value.equalsIgnoreCase(make));
+    }
+
+    // cars whose make contains the given text, ignoring case
+    BitSet withMakeContaining(String text) {
+        String lowerText = text.toLowerCase();
+        return union(byMake, value -> value != null && value.toLowerCase().contains(lowerText));
+    }
+
+    BitSet withType(String type) {
+        CarType carType = CarType.fromString(type);
+        BitSet bitSet = carType != null ? byType.get(carType) : null;
+        return bitSet != null ? copy(bitSet) : new BitSet();
+    }
+
+    // cars with a model year in [minYear, maxYear], either bound may be null
+    BitSet withYearBetween(Integer minYear, Integer maxYear) {
+        NavigableMap<Integer, BitSet> range = byYear;
+        if (minYear != null) {
+            range = range.tailMap(minYear, true);
+        }
+        if (maxYear != null) {
+            range = range.headMap(maxYear, true);
+        }
+
+        BitSet result = new BitSet();
+        for (BitSet bitSet : range.values()) {
+            result.or(bitSet);
+        }
+        return result;
+    }
+
+    // clone() may trim the source, or() only reads it, so readers holding a shared lock can copy at the same time
+    private static BitSet copy(BitSet bitSet) {
+        BitSet copy = new BitSet();
+        copy.or(bitSet);
+        return copy;
+    }
+
+    private static BitSet union(Map<String, BitSet> facet, Predicate<String> valueMatches) {
+        BitSet result = new BitSet();
+        for (Map.Entry<String, BitSet> entry : facet.entrySet()) {
+            if (valueMatches.test(entry.getKey())) {
+                result.or(entry.getValue());
+            }
+        }
+        return result;
+    }
+
+    int countAll() {
+        return live.cardinality();
+    }
+
+    int countAvailable() {
+        return available.cardinality();
+    }
+
+    Map<String, Long> countByMake() {
+        return counts(byMake);
+    }
+
+    Map<String, Long> countByType() {
+        Map<String, Long> counts = new HashMap<>();
+        for (Map.Entry<CarType, BitSet> entry : byType.entrySet()) {
+            counts.put(entry.getKey().getDisplayName(), (long) entry.getValue().cardinality());
+        }
+        return counts;
+    }
+
+    private static Map<String, Long> counts(Map<String, BitSet> facet) {
+        Map<String, Long> counts = new HashMap<>();
+        for (Map.Entry<String, BitSet> entry : facet.entrySet()) {
+            counts.put(entry.getKey(), (long) entry.getValue().cardinality());
+        }
+        return counts;
+    }
+
+    // turns a bitset of slots back into cars, in slot order
+    List<Car> toCars(BitSet bitSet) {
+        List<Car> result = new ArrayList<>(bitSet.cardinality());
+        for (int slot = bitSet.nextSetBit(0); slot >= 0; slot = bitSet.nextSetBit(slot + 1)) {
+            result.add(slots.get(slot));
+        }
+        return result;
+    }
+
+    // a bitset whose words are swapped by compare-and-set, so bits of different slots can be set at the same time
+    // the words array only grows in ensureCapacity, which must not run at the same time as anything else
+    private static class AtomicBits {
+        private volatile AtomicLongArray words = new AtomicLongArray(1);
+
+        void ensureCapacity(int bits) {
+            int needed = (bits + 63) >>> 6;
+            AtomicLongArray current = words;
+            if (needed > current.length()) {
+                AtomicLongArray grown = new AtomicLongArray(Math.max(needed, current.length() * 2));
+                for (int i = 0; i < current.length(); i++) {
+                    grown.set(i, current.get(i));
+                }
+                words = grown;
+            }
+        }
+
+        void set(int bit, boolean value) {
+            long mask = 1L << bit;
+            words.getAndUpdate(bit >>> 6, word -> value ? word | mask : word & ~mask);
+        }
+
+        BitSet toBitSet() {
+            AtomicLongArray current = words;
+            long[] copy = new long[current.length()];
+            for (int i = 0; i < copy.length; i++) {
+                copy[i] = current.get(i);
+            }
+            return BitSet.valueOf(copy);
+        }
+
+        int cardinality() {
+            AtomicLongArray current = words;
+            int count = 0;
+            for (int i = 0; i < current.length(); i++) {
+                count += Long.bitCount(current.get(i));
+            }
+            return count;
+        }
+    }
+}
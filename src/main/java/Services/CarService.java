@@ -1,16 +1,35 @@
 package Services;
 
 import Models.Car;
+import Models.CarStatus;
+import Models.CarType;
+import Utils.ChangeTracker;
+import Utils.IdSequence;
 import Utils.InputValidator;
+import interfaces.MutationListener;
 import interfaces.Searchable;
 
 import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
 
 public class CarService {
 
     private List<Car> cars;
+    private final Map<String, Car> carsById = new HashMap<>();
+    private final TrigramIndex<Car> searchIndex = new TrigramIndex<>(car -> new String[]{
+            car.getId(), car.getMake(), car.getModel(), car.getType(), String.valueOf(car.getYear())});
+    private final CarFacetIndex facets = new CarFacetIndex();
     private static final double DEFAULT_DAILY_RATE = 50.0;
+    private final ChangeTracker changeTracker = new ChangeTracker();
+    private final IdSequence carIds = new IdSequence("C");
+    // the list and the indexes are guarded by lock, the rental state of a car changes by compare-and-set
+    // take a car's stripe before lock, never the other way round
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final StripedLock carLocks = new StripedLock(64);
+    // runs before availability is read, the rental service hands over the cars of started reservations there
+    private volatile Runnable availabilityCheck = () -> { };
 
     public CarService() {
         this.cars = new ArrayList<>();
@@ -18,17 +37,54 @@ public class CarService {
 
     public CarService(List<Car> cars) {
         this.cars = cars != null ? new ArrayList<>(cars) : new ArrayList<>();
+        for (Car car : this.cars) {
+            carsById.putIfAbsent(idKey(car.getId()), car);
+            searchIndex.add(car);
+            facets.add(car);
+            carIds.observe(car.getId());
+        }
+    }
+
+    // ids are matched ignoring case, the same way equalsIgnoreCase did
+    private static String idKey(String id) {
+        return id.toUpperCase(Locale.ROOT);
+    }
+
+    // the lock a booking, return or cancellation holds from its checks until the rental status has changed
+    Lock lockFor(String carId) {
+        return carLocks.forKey(carId);
     }
 
     // adds car to the system
     public boolean addCar(Car car) {
-        if (car == null || findCarById(car.getId()) != null) {
-            return false;
+        Outcome<Car> outcome = tryAddCar(car);
+        if (outcome.isOk()) {
+            System.out.println("Car was added successfully: " + car);
+        }
+        return outcome.isOk();
+    }
+
+    // adds car to the system, or tells why it cannot
+    public Outcome<Car> tryAddCar(Car car) {
+        if (car == null || car.getId() == null) {
+            return Outcome.refused("Invalid car data.");
         }
 
-        cars.add(car);
-        System.out.println("Car was added successfully: " + car);
-        return true;
+        lock.writeLock().lock();
+        try {
+            if (carsById.containsKey(idKey(car.getId()))) {
+                return Outcome.refused("Car with ID " + car.getId() + " already exists.");
+            }
+            cars.add(car);
+            carsById.put(idKey(car.getId()), car);
+            searchIndex.add(car);
+            facets.add(car);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        carIds.observe(car.getId());
+        recordMutation(MutationListener.Type.CAR_ADDED, car);
+        return Outcome.done(car);
     }
 
     // adds car to the system through console
@@ -61,10 +117,15 @@ public class CarService {
 
     // find car by id
     public Car findCarById(String carId) {
-        return cars.stream()
-                .filter(car -> car.getId().equalsIgnoreCase(carId))
-                .findFirst()
-                .orElse(null);
+        if (carId == null) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            return carsById.get(idKey(carId));
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     // updates existing car information
@@ -103,7 +164,7 @@ public class CarService {
             // type updates
             String newType = InputValidator.readOptionalString("Type [" + car.getType() + "]: ");
             if (!newType.isEmpty() && InputValidator.isValidCarType(newType)) {
-                car.setType(newType.substring(0, 1).toUpperCase() + newType.substring(1).toLowerCase());
+                car.setType(CarType.fromString(newType));
             } else if (!newType.isEmpty()) {
                 System.out.println("Invalid car type, keeping current value.");
             }
@@ -113,11 +174,25 @@ public class CarService {
                 System.out.println("Car is currently rented to: " + car.getCurrentRenter());
                 boolean forceAvailable = InputValidator.readYesNo("Force car to be available (will cancel current rental)?");
                 if (forceAvailable) {
-                    car.returnItem();
+                    Lock carLock = lockFor(car.getId());
+                    carLock.lock();
+                    try {
+                        car.returnItem();
+                    } finally {
+                        carLock.unlock();
+                    }
                     System.out.println("Car marked as available. Previous rental information cleared.");
                 }
             }
 
+            lock.writeLock().lock();
+            try {
+                searchIndex.update(car);
+                facets.update(car);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            recordMutation(MutationListener.Type.CAR_UPDATED, car);
             System.out.println("Car updated successfully: " + car);
             return true;
 
@@ -145,7 +220,16 @@ public class CarService {
 
         boolean confirmRemoval = InputValidator.readYesNo("Are you sure you want to remove " + car + "?");
         if (confirmRemoval) {
-            cars.remove(car);
+            lock.writeLock().lock();
+            try {
+                cars.remove(car);
+                carsById.remove(idKey(car.getId()), car);
+                searchIndex.remove(car);
+                facets.remove(car);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            recordMutation(MutationListener.Type.CAR_REMOVED, car);
             System.out.println("Car removed successfully: " + car);
             return true;
         }
@@ -153,23 +237,167 @@ public class CarService {
         return false;
     }
 
+    // pending changes to the fleet
+    public List<ChangeTracker.Change> drainChanges() {
+        return changeTracker.drain();
+    }
+
+    public int getPendingChangeCount() {
+        return changeTracker.size();
+    }
+
+    public void stopTrackingChanges() {
+        changeTracker.stopTracking();
+    }
+
+    ChangeTracker getChangeTracker() {
+        return changeTracker;
+    }
+
+    void setAvailabilityCheck(Runnable availabilityCheck) {
+        this.availabilityCheck = availabilityCheck;
+    }
+
+    // marks a car as changed by another service (e.g. rented or returned)
+    void carChanged(Car car) {
+        updateAvailability(car);
+        recordMutation(MutationListener.Type.CAR_UPDATED, car);
+    }
+
+    // call after a car was rented or returned outside of this service
+    // the availability bit is set by compare-and-set, so rentals of different cars share the lock
+    void updateAvailability(Car car) {
+        lock.readLock().lock();
+        try {
+            facets.updateAvailability(car);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void recordMutation(MutationListener.Type type, Car car) {
+        changeTracker.onMutation(type, car.getId(),
+                type == MutationListener.Type.CAR_REMOVED ? null : () -> "CAR," + car.toCSV());
+    }
+
     // gets all the cars in the system
     public List<Car> getAllCars() {
-        return new ArrayList<>(cars);
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(cars);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     // gets all the available cars in the system
     public List<Car> getAvailableCars() {
-        return cars.stream()
-                .filter(Car::isAvailable)
-                .collect(Collectors.toList());
+        availabilityCheck.run();
+        lock.readLock().lock();
+        try {
+            return facets.toCars(facets.available());
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     // gets all the rented cars in the system
     public List<Car> getRentedCars() {
-        return cars.stream()
-                .filter(car -> !car.isAvailable())
-                .collect(Collectors.toList());
+        availabilityCheck.run();
+        lock.readLock().lock();
+        try {
+            return facets.toCars(facets.rented());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // all cars except the ones with the given ids
+    public List<Car> getCarsExcluding(Collection<String> carIds) {
+        lock.readLock().lock();
+        try {
+            BitSet result = facets.all();
+            for (String carId : carIds) {
+                Car car = carsById.get(idKey(carId));
+                if (car != null) {
+                    result.andNot(facets.of(car));
+                }
+            }
+            return facets.toCars(result);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Map<String, Long> getCarCountsByType() {
+        lock.readLock().lock();
+        try {
+            return facets.countByType();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Map<String, Long> getCarCountsByMake() {
+        lock.readLock().lock();
+        try {
+            return facets.countByMake();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getCarCount() {
+        lock.readLock().lock();
+        try {
+            return facets.countAll();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getAvailableCarCount() {
+        availabilityCheck.run();
+        lock.readLock().lock();
+        try {
+            return facets.countAvailable();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getRentedCarCount() {
+        availabilityCheck.run();
+        lock.readLock().lock();
+        try {
+            return facets.countAll() - facets.countAvailable();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // filters the fleet by several facets at once, null means the facet is not filtered
+    // e.g. filterCars(true, null, "SUV", 2023, null) gives the available SUVs from 2023 onward
+    public List<Car> filterCars(Boolean available, String make, String type, Integer minYear, Integer maxYear) {
+        if (available != null) {
+            availabilityCheck.run();
+        }
+        lock.readLock().lock();
+        try {
+            BitSet result = available == null ? facets.all() : available ? facets.available() : facets.rented();
+            if (make != null && !result.isEmpty()) {
+                result.and(facets.withMake(make));
+            }
+            if (type != null && !result.isEmpty()) {
+                result.and(facets.withType(type));
+            }
+            if ((minYear != null || maxYear != null) && !result.isEmpty()) {
+                result.and(facets.withYearBetween(minYear, maxYear));
+            }
+            return facets.toCars(result);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     // searches a car by a various criteria
@@ -178,37 +406,66 @@ public class CarService {
             return getAllCars();
         }
 
-        return cars.stream()
-                .filter(car -> car.matchesSearchTerm(searchTerm))
-                .collect(Collectors.toList());
+        lock.readLock().lock();
+        try {
+            List<Car> results = searchIndex.search(searchTerm, car -> car.matchesSearchTerm(searchTerm));
+            if (results != null) {
+                return results;
+            }
+
+            // terms shorter than a trigram are matched by a scan
+            return cars.stream()
+                    .filter(car -> car.matchesSearchTerm(searchTerm))
+                    .collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     // search car by id
     public List<Car> searchById(String carId) {
-        return cars.stream()
-                .filter(car -> car.matchesId(carId))
-                .collect(Collectors.toList());
+        lock.readLock().lock();
+        try {
+            return cars.stream()
+                    .filter(car -> car.matchesId(carId))
+                    .collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     // search car by model
     public List<Car> searchByModel(String model) {
-        return cars.stream()
-                .filter(car -> car.matchesModel(model))
-                .collect(Collectors.toList());
+        lock.readLock().lock();
+        try {
+            return cars.stream()
+                    .filter(car -> car.matchesModel(model))
+                    .collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     // search car by make
     public List<Car> searchByMake(String make) {
-        return cars.stream()
-                .filter(car -> car.matchesMake(make))
-                .collect(Collectors.toList());
+        lock.readLock().lock();
+        try {
+            return facets.toCars(facets.withMakeContaining(make));
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     // search car by its status
     public List<Car> searchByStatus(String status) {
-        return cars.stream()
-                .filter(car -> car.matchesStatus(status))
-                .collect(Collectors.toList());
+        CarStatus carStatus = CarStatus.fromString(status);
+        if (carStatus == CarStatus.AVAILABLE) {
+            return getAvailableCars();
+        }
+        if (carStatus == CarStatus.RENTED) {
+            return getRentedCars();
+        }
+        return new ArrayList<>();
     }
 
     // interactive search method
@@ -221,8 +478,9 @@ public class CarService {
         System.out.println("3. Search by Model");
         System.out.println("4. Search by Status (Available/Rented)");
         System.out.println("5. General search (all fields)");
+        System.out.println("6. Filter by status, make, type and year");
 
-        int choice = InputValidator.readIntInRange("Choose search type (1-5): ", 1, 5);
+        int choice = InputValidator.readIntInRange("Choose search type (1-6): ", 1, 6);
 
         switch (choice) {
             case 1:
@@ -240,11 +498,48 @@ public class CarService {
             case 5:
                 String searchTerm = InputValidator.readNonEmptyString("Enter search term: ");
                 return searchCars(searchTerm);
+            case 6:
+                return filterCarsInteractive();
             default:
                 return new ArrayList<>();
         }
     }
 
+    // reads the facets to filter by, empty input skips a facet
+    private List<Car> filterCarsInteractive() {
+        System.out.println("Press Enter to skip a filter.");
+
+        String statusInput = InputValidator.readOptionalString("Status (Available/Rented): ");
+        CarStatus status = CarStatus.fromString(statusInput);
+        Boolean available = null;
+        if (status == CarStatus.AVAILABLE) {
+            available = true;
+        } else if (status == CarStatus.RENTED) {
+            available = false;
+        } else if (!statusInput.isEmpty()) {
+            System.out.println("Unknown status, showing all statuses.");
+        }
+
+        String make = InputValidator.readOptionalString("Make: ");
+        String type = InputValidator.readOptionalString("Type: ");
+        Integer minYear = readOptionalYear("From year: ");
+        Integer maxYear = readOptionalYear("To year: ");
+
+        return filterCars(available, make.isEmpty() ? null : make, type.isEmpty() ? null : type, minYear, maxYear);
+    }
+
+    private Integer readOptionalYear(String prompt) {
+        String input = InputValidator.readOptionalString(prompt);
+        if (input.isEmpty()) {
+            return null;
+        }
+        if (!InputValidator.isValidCarYear(input)) {
+            System.out.println("Invalid year, this filter is skipped.");
+            return null;
+        }
+        return Integer.parseInt(input);
+    }
+
     // displays all the car in formatted table
     public void displayAllCars() {
         displayCarList(getAllCars(), "All Cars");
@@ -296,40 +591,46 @@ public class CarService {
         return str.length() <= maxLength ? str : str.substring(0, maxLength - 3) + "...";
     }
 
-    // generates the next available car id
+    // generates the next available car id, every call hands out a new one
     public String generateNextCarId() {
-        int maxId = 0;
-        for (Car car : cars) {
-            try {
-                String idNum = car.getId().substring(1); // Remove 'C' prefix
-                int id = Integer.parseInt(idNum);
-                maxId = Math.max(maxId, id);
-            } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
-                // ignores invalid IDs
-            }
-        }
-        return "C" + String.format("%03d", maxId + 1);
+        return carIds.next();
+    }
+
+    public IdSequence getIdSequence() {
+        return carIds;
     }
 
     // get statistics about the car fleet
     public Map<String, Object> getCarStatistics() {
         Map<String, Object> stats = new HashMap<>();
 
-        stats.put("totalCars", cars.size());
-        stats.put("availableCars", getAvailableCars().size());
-        stats.put("rentedCars", getRentedCars().size());
+        // every count comes from the facet bitsets
+        stats.put("totalCars", getCarCount());
+        stats.put("availableCars", getAvailableCarCount());
+        stats.put("rentedCars", getRentedCarCount());
+        stats.put("carsByMake", getCarCountsByMake());
+        stats.put("carsByType", getCarCountsByType());
+        stats.put("contentionByModel", getContentionByModel());
 
-        // group by make
-        Map<String, Long> makeStats = cars.stream()
-                .collect(Collectors.groupingBy(Car::getMake, Collectors.counting()));
-        stats.put("carsByMake", makeStats);
+        return stats;
+    }
 
-        // group by type
-        Map<String, Long> typeStats = cars.stream()
-                .collect(Collectors.groupingBy(Car::getType, Collectors.counting()));
-        stats.put("carsByType", typeStats);
+    // lost compare-and-set races plus refused rentals per make and model, busiest first
+    // models that never saw contention are left out
+    public Map<String, Long> getContentionByModel() {
+        Map<String, Long> contention = new HashMap<>();
+        for (Car car : getAllCars()) {
+            long count = car.getStateRetries() + car.getRefusedRentals();
+            if (count > 0) {
+                contention.merge(car.getMake() + " " + car.getModel(), count, Long::sum);
+            }
+        }
 
-        return stats;
+        Map<String, Long> sorted = new LinkedHashMap<>();
+        contention.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .forEachOrdered(entry -> sorted.put(entry.getKey(), entry.getValue()));
+        return sorted;
     }
 
     // displays all the statistisc
@@ -351,5 +652,12 @@ public class CarService {
         @SuppressWarnings("unchecked")
         Map<String, Long> typeStats = (Map<String, Long>) stats.get("carsByType");
         typeStats.forEach((type, count) -> System.out.println("  " + type + ": " + count));
+
+        @SuppressWarnings("unchecked")
+        Map<String, Long> contentionStats = (Map<String, Long>) stats.get("contentionByModel");
+        if (!contentionStats.isEmpty()) {
+            System.out.println("\nBooking Contention by Model (retries + refused rentals):");
+            contentionStats.forEach((model, count) -> System.out.println("  " + model + ": " + count));
+        }
     }
 }
\ No newline at end of file
@@ -1,16 +1,32 @@
 package Services;
 
 import Models.Customer;
+import Utils.ChangeTracker;
+import Utils.IdSequence;
 import Utils.InputValidator;
+import interfaces.MutationListener;
 
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 
 public class CustomerService {
 
     private List<Customer> customers;
+    private final Map<String, Customer> customersById = new HashMap<>();
+    private final Map<String, Customer> customersByEmail = new HashMap<>();
+    private final Map<String, Customer> customersByLicense = new HashMap<>();
+    private final TrigramIndex<Customer> searchIndex = new TrigramIndex<>(customer -> new String[]{
+            customer.getCustomerId(), customer.getName(), customer.getEmail(),
+            customer.getPhone(), customer.getLicenseNumber()});
+    private final ChangeTracker changeTracker = new ChangeTracker();
+    private final IdSequence customerIds = new IdSequence("CUST");
+    // guards the list and the indexes, customers are only read while rentals are booked
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
 
     public CustomerService() {
         this.customers = new ArrayList<>();
@@ -18,33 +34,80 @@ public class CustomerService {
 
     public CustomerService(List<Customer> customers) {
         this.customers = customers != null ? new ArrayList<>(customers) : new ArrayList<>();
+        for (Customer customer : this.customers) {
+            index(customer);
+            searchIndex.add(customer);
+            customerIds.observe(customer.getCustomerId());
+        }
     }
 
-    // adds new customer to the system
-    public boolean addCustomer(Customer customer) {
-        if (customer == null || !customer.isValid()) {
-            System.out.println("Invalid customer data.");
-            return false;
-        }
+    // all keys are matched ignoring case, the same way equalsIgnoreCase did
+    private static String key(String value) {
+        return value != null ? value.toUpperCase(Locale.ROOT) : null;
+    }
 
-        if (findCustomerById(customer.getCustomerId()) != null) {
-            System.out.println("Customer with ID " + customer.getCustomerId() + " already exists.");
-            return false;
+    // the first customer wins if loaded data contains duplicates, like the old linear search
+    private void index(Customer customer) {
+        if (customer.getCustomerId() != null) {
+            customersById.putIfAbsent(key(customer.getCustomerId()), customer);
+        }
+        if (customer.getEmail() != null) {
+            customersByEmail.putIfAbsent(key(customer.getEmail()), customer);
+        }
+        if (customer.getLicenseNumber() != null) {
+            customersByLicense.putIfAbsent(key(customer.getLicenseNumber()), customer);
         }
+    }
 
-        if (findCustomerByEmail(customer.getEmail()) != null) {
-            System.out.println("Customer with email " + customer.getEmail() + " already exists.");
-            return false;
+    private void unindex(Customer customer) {
+        if (customer.getCustomerId() != null) {
+            customersById.remove(key(customer.getCustomerId()), customer);
+        }
+        if (customer.getEmail() != null) {
+            customersByEmail.remove(key(customer.getEmail()), customer);
         }
+        if (customer.getLicenseNumber() != null) {
+            customersByLicense.remove(key(customer.getLicenseNumber()), customer);
+        }
+    }
 
-        if (findCustomerByLicense(customer.getLicenseNumber()) != null) {
-            System.out.println("Customer with license number " + customer.getLicenseNumber() + " already exists.");
-            return false;
+    // adds new customer to the system and prints the outcome
+    public boolean addCustomer(Customer customer) {
+        Outcome<Customer> outcome = tryAddCustomer(customer);
+        System.out.println(outcome.isOk() ? "Customer added successfully: " + customer.getName()
+                + " (ID: " + customer.getCustomerId() + ")" : outcome.getError());
+        return outcome.isOk();
+    }
+
+    // adds new customer to the system, or tells why it cannot
+    public Outcome<Customer> tryAddCustomer(Customer customer) {
+        if (customer == null || !customer.isValid()) {
+            return Outcome.refused("Invalid customer data.");
         }
 
-        customers.add(customer);
-        System.out.println("Customer added successfully: " + customer.getName() + " (ID: " + customer.getCustomerId() + ")");
-        return true;
+        lock.writeLock().lock();
+        try {
+            if (findCustomerById(customer.getCustomerId()) != null) {
+                return Outcome.refused("Customer with ID " + customer.getCustomerId() + " already exists.");
+            }
+
+            if (findCustomerByEmail(customer.getEmail()) != null) {
+                return Outcome.refused("Customer with email " + customer.getEmail() + " already exists.");
+            }
+
+            if (findCustomerByLicense(customer.getLicenseNumber()) != null) {
+                return Outcome.refused("Customer with license number " + customer.getLicenseNumber() + " already exists.");
+            }
+
+            customers.add(customer);
+            index(customer);
+            searchIndex.add(customer);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        customerIds.observe(customer.getCustomerId());
+        recordMutation(MutationListener.Type.CUSTOMER_ADDED, customer);
+        return Outcome.done(customer);
     }
 
     // adds a new customer through console input
@@ -85,26 +148,41 @@ public class CustomerService {
 
     // find customer by id
     public Customer findCustomerById(String customerId) {
-        return customers.stream()
-                .filter(customer -> customer.getCustomerId().equalsIgnoreCase(customerId))
-                .findFirst()
-                .orElse(null);
+        if (customerId == null) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            return customersById.get(key(customerId));
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     // find customer by email
     public Customer findCustomerByEmail(String email) {
-        return customers.stream()
-                .filter(customer -> customer.getEmail().equalsIgnoreCase(email))
-                .findFirst()
-                .orElse(null);
+        if (email == null) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            return customersByEmail.get(key(email));
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     // find customer by license number
     public Customer findCustomerByLicense(String licenseNumber) {
-        return customers.stream()
-                .filter(customer -> customer.getLicenseNumber().equalsIgnoreCase(licenseNumber))
-                .findFirst()
-                .orElse(null);
+        if (licenseNumber == null) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            return customersByLicense.get(key(licenseNumber));
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     // updates an existing customer information
@@ -133,7 +211,14 @@ public class CustomerService {
                 if (newEmail.contains("@")) {
                     Customer existingCustomer = findCustomerByEmail(newEmail);
                     if (existingCustomer == null || existingCustomer.getCustomerId().equals(customerId)) {
-                        customer.setEmail(newEmail);
+                        lock.writeLock().lock();
+                        try {
+                            unindex(customer);
+                            customer.setEmail(newEmail);
+                            index(customer);
+                        } finally {
+                            lock.writeLock().unlock();
+                        }
                     } else {
                         System.out.println("Email already taken by another customer, keeping current value.");
                     }
@@ -153,12 +238,26 @@ public class CustomerService {
             if (!newLicense.isEmpty()) {
                 Customer existingCustomer = findCustomerByLicense(newLicense);
                 if (existingCustomer == null || existingCustomer.getCustomerId().equals(customerId)) {
-                    customer.setLicenseNumber(newLicense);
+                    lock.writeLock().lock();
+                    try {
+                        unindex(customer);
+                        customer.setLicenseNumber(newLicense);
+                        index(customer);
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
                 } else {
                     System.out.println("License number already taken by another customer, keeping current value.");
                 }
             }
 
+            lock.writeLock().lock();
+            try {
+                searchIndex.update(customer);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            recordMutation(MutationListener.Type.CUSTOMER_UPDATED, customer);
             System.out.println("Customer updated successfully: " + customer);
             return true;
 
@@ -181,7 +280,15 @@ public class CustomerService {
         boolean confirmRemoval = InputValidator.readYesNo("Are you sure you want to remove " + customer.getName() + "?");
 
         if (confirmRemoval) {
-            customers.remove(customer);
+            lock.writeLock().lock();
+            try {
+                customers.remove(customer);
+                unindex(customer);
+                searchIndex.remove(customer);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            recordMutation(MutationListener.Type.CUSTOMER_REMOVED, customer);
             System.out.println("Customer removed successfully: " + customer.getName());
             return true;
         }
@@ -189,9 +296,36 @@ public class CustomerService {
         return false;
     }
 
+    // pending changes to customers
+    public List<ChangeTracker.Change> drainChanges() {
+        return changeTracker.drain();
+    }
+
+    public int getPendingChangeCount() {
+        return changeTracker.size();
+    }
+
+    public void stopTrackingChanges() {
+        changeTracker.stopTracking();
+    }
+
+    ChangeTracker getChangeTracker() {
+        return changeTracker;
+    }
+
+    private void recordMutation(MutationListener.Type type, Customer customer) {
+        changeTracker.onMutation(type, customer.getCustomerId(),
+                type == MutationListener.Type.CUSTOMER_REMOVED ? null : customer::toCSV);
+    }
+
     // gets all the customers in the system
     public List<Customer> getAllCustomers() {
-        return new ArrayList<>(customers);
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(customers);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     // searches a customer by various criteria
@@ -200,23 +334,50 @@ public class CustomerService {
             return getAllCustomers();
         }
 
-        return customers.stream()
-                .filter(customer -> customer.matchesSearchTerm(searchTerm))
-                .collect(Collectors.toList());
+        lock.readLock().lock();
+        try {
+            List<Customer> results = searchIndex.search(searchTerm, customer -> customer.matchesSearchTerm(searchTerm));
+            if (results != null) {
+                return results;
+            }
+
+            // terms shorter than a trigram are matched by a scan
+            return customers.stream()
+                    .filter(customer -> customer.matchesSearchTerm(searchTerm))
+                    .collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     // searches by name
     public List<Customer> searchByName(String name) {
-        return customers.stream()
-                .filter(customer -> customer.getName().toLowerCase().contains(name.toLowerCase()))
-                .collect(Collectors.toList());
+        return searchField(name, Customer::getName);
     }
 
     // searches by email
     public List<Customer> searchByEmail(String email) {
-        return customers.stream()
-                .filter(customer -> customer.getEmail().toLowerCase().contains(email.toLowerCase()))
-                .collect(Collectors.toList());
+        return searchField(email, Customer::getEmail);
+    }
+
+    // substring search on one field, the trigram index narrows down the candidates when the term is long enough
+    private List<Customer> searchField(String term, Function<Customer, String> field) {
+        String lowerTerm = term.toLowerCase();
+        Predicate<Customer> matcher = customer -> field.apply(customer).toLowerCase().contains(lowerTerm);
+
+        lock.readLock().lock();
+        try {
+            List<Customer> results = searchIndex.search(term, matcher);
+            if (results != null) {
+                return results;
+            }
+
+            return customers.stream()
+                    .filter(matcher)
+                    .collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     // interactive search
@@ -290,24 +451,19 @@ public class CustomerService {
         return str.length() <= maxLength ? str : str.substring(0, maxLength - 3) + "...";
     }
 
-    // generates next available customer id
+    // generates next available customer id, every call hands out a new one
     public String generateNextCustomerId() {
-        int maxId = 0;
-        for (Customer customer : customers) {
-            try {
-                String idNum = customer.getCustomerId().substring(4); // Remove 'CUST' prefix
-                int id = Integer.parseInt(idNum);
-                maxId = Math.max(maxId, id);
-            } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
-                // ignores invalid IDs
-            }
-        }
-        return "CUST" + String.format("%03d", maxId + 1);
+        return customerIds.next();
+    }
+
+    public IdSequence getIdSequence() {
+        return customerIds;
     }
 
     // gets statistics about the customer
     public Map<String, Object> getCustomerStatistics() {
         Map<String, Object> stats = new HashMap<>();
+        List<Customer> customers = getAllCustomers();
 
         stats.put("totalCustomers", customers.size());
 
@@ -351,6 +507,7 @@ public class CustomerService {
     // validates customer data integrity
     public List<String> validateCustomerData() {
         List<String> issues = new ArrayList<>();
+        List<Customer> customers = getAllCustomers();
 
         // checks for duplicate emails
         Map<String, Long> emailCounts = customers.stream()
@@ -0,0 +1,362 @@
+package Services;
+
+import Models.Car;
+import Models.CarRentalState;
+import Models.Customer;
+import Models.Rental;
+import Utils.Json;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// a small HTTP/JSON front for the services, every request runs on its own virtual thread
+//   GET  /cars?available=&make=&type=&minYear=&maxYear=    GET /cars/search?q=    GET /cars/free?from=&to=
+//   GET  /cars/{id}    GET /customers/search?q=    GET /customers/{id}
+//   GET  /rentals?status=active|completed|overdue    GET /rentals?customerId=    GET /rentals?carId=
+//   GET  /rentals/{id}
+//   POST /rentals?customerId=&carId=&startDate=&endDate=[&dailyRate=]
+//   POST /rentals/{id}/complete[?returnDate=]    POST /rentals/{id}/cancel[?reason=]
+//   GET  /stats    GET /stats/cars    GET /stats/customers    GET /stats/rentals
+// parameters come from the query string or a form encoded body, dates as in BatchRunner (yyyy-MM-dd, today, +N)
+public class HttpApi {
+
+    private static final int BACKLOG = 4096;
+
+    private final CarService carService;
+    private final CustomerService customerService;
+    private final RentalService rentalService;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public HttpApi(CarService carService, CustomerService customerService, RentalService rentalService) {
+        this.carService = carService;
+        this.customerService = customerService;
+        this.rentalService = rentalService;
+    }
+
+    public void start(String host, int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(host, port), BACKLOG);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(1);
+            executor.shutdown();
+            server = null;
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // an HTTP error with its message
+    private static class ApiException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        private final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int status;
+        String body;
+        try {
+            Map<String, String> params = readParams(exchange);
+            String[] path = exchange.getRequestURI().getPath().replaceAll("^/+|/+$", "").split("/+");
+            Object result = dispatch(exchange.getRequestMethod(), path, params);
+            status = "POST".equals(exchange.getRequestMethod()) && path.length == 1 ? 201 : 200;
+            body = Json.toJson(result);
+        } catch (ApiException e) {
+            status = e.status;
+            body = error(e.getMessage());
+        } catch (IllegalArgumentException | DateTimeException | ArithmeticException e) {
+            // bad numbers and dates, including a "+N" too far out for a date
+            status = 400;
+            body = error(e.getMessage());
+        } catch (RuntimeException e) {
+            status = 500;
+            body = error("Internal error: " + e.getMessage());
+        }
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private Object dispatch(String method, String[] path, Map<String, String> params) {
+        String resource = path[0];
+        boolean get = "GET".equals(method);
+        boolean post = "POST".equals(method);
+
+        if (resource.equals("cars") && get) {
+            return cars(path, params);
+        }
+        if (resource.equals("customers") && get) {
+            return customers(path, params);
+        }
+        if (resource.equals("rentals") && (get || post)) {
+            return post ? changeRental(path, params) : rentals(path, params);
+        }
+        if (resource.equals("stats") && get) {
+            return stats(path.length > 1 ? path[1] : "");
+        }
+        if (resource.equals("cars") || resource.equals("customers") || resource.equals("stats")) {
+            throw new ApiException(405, "Method " + method + " not allowed.");
+        }
+        throw new ApiException(404, "No such resource: /" + String.join("/", path));
+    }
+
+    private Object cars(String[] path, Map<String, String> params) {
+        if (path.length == 1) {
+            return toJsonCars(carService.filterCars(optionalBoolean(params, "available"), params.get("make"),
+                    params.get("type"), optionalInt(params, "minYear"), optionalInt(params, "maxYear")));
+        }
+        if (path[1].equals("search")) {
+            return toJsonCars(carService.searchCars(params.getOrDefault("q", "")));
+        }
+        if (path[1].equals("free")) {
+            return toJsonCars(rentalService.getCarsFreeBetween(date(params, "from"), date(params, "to")));
+        }
+
+        Car car = carService.findCarById(path[1]);
+        if (car == null) {
+            throw new ApiException(404, "Car with ID " + path[1] + " not found.");
+        }
+        return toJson(car);
+    }
+
+    private Object customers(String[] path, Map<String, String> params) {
+        if (path.length > 1 && path[1].equals("search")) {
+            List<Map<String, Object>> result = new ArrayList<>();
+            for (Customer customer : customerService.searchCustomers(params.getOrDefault("q", ""))) {
+                result.add(toJson(customer));
+            }
+            return result;
+        }
+        if (path.length == 1) {
+            throw new ApiException(400, "Use /customers/search?q= or /customers/{id}.");
+        }
+
+        Customer customer = customerService.findCustomerById(path[1]);
+        if (customer == null) {
+            throw new ApiException(404, "Customer with ID " + path[1] + " not found.");
+        }
+        return toJson(customer);
+    }
+
+    private Object rentals(String[] path, Map<String, String> params) {
+        if (path.length > 1) {
+            return toJson(findRental(path[1]));
+        }
+
+        List<Rental> rentals;
+        if (params.containsKey("customerId")) {
+            rentals = rentalService.getRentalsByCustomer(params.get("customerId"));
+        } else if (params.containsKey("carId")) {
+            rentals = rentalService.getRentalsByCar(params.get("carId"));
+        } else {
+            String status = params.getOrDefault("status", "active").toLowerCase(Locale.ROOT);
+            switch (status) {
+                case "active":
+                    rentals = rentalService.getActiveRentals();
+                    break;
+                case "completed":
+                    rentals = rentalService.getCompletedRentals();
+                    break;
+                case "overdue":
+                    rentals = rentalService.getOverdueRentals();
+                    break;
+                default:
+                    throw new ApiException(400, "Unknown status: " + status);
+            }
+        }
+
+        List<Map<String, Object>> result = new ArrayList<>(rentals.size());
+        for (Rental rental : rentals) {
+            result.add(toJson(rental));
+        }
+        return result;
+    }
+
+    private Object changeRental(String[] path, Map<String, String> params) {
+        if (path.length == 1) {
+            double dailyRate = BatchRunner.parseDailyRate(params.getOrDefault("dailyRate", ""));
+            return toJson(changed(rentalService.tryCreateRental(required(params, "customerId"),
+                    required(params, "carId"), date(params, "startDate"), date(params, "endDate"), dailyRate)));
+        }
+
+        Rental rental = findRental(path[1]);
+        String action = path.length > 2 ? path[2] : "";
+        if (action.equals("complete")) {
+            LocalDate returnDate = params.containsKey("returnDate") ? date(params, "returnDate") : LocalDate.now();
+            return toJson(changed(rentalService.tryCompleteRental(rental.getRentalId(), returnDate)));
+        }
+        if (action.equals("cancel")) {
+            return toJson(changed(rentalService.tryCancelRental(rental.getRentalId(), params.getOrDefault("reason", ""))));
+        }
+        throw new ApiException(404, "Use POST /rentals/{id}/complete or /rentals/{id}/cancel.");
+    }
+
+    // the rental a change produced, a refused change conflicts with the current state
+    private static Rental changed(Outcome<Rental> outcome) {
+        if (!outcome.isOk()) {
+            throw new ApiException(409, outcome.getError());
+        }
+        return outcome.getValue();
+    }
+
+    private Object stats(String kind) {
+        switch (kind) {
+            case "cars":
+                return carService.getCarStatistics();
+            case "customers":
+                return customerService.getCustomerStatistics();
+            case "rentals":
+                return rentalService.getRentalStatistics();
+            case "":
+                Map<String, Object> all = new LinkedHashMap<>();
+                all.put("cars", carService.getCarStatistics());
+                all.put("customers", customerService.getCustomerStatistics());
+                all.put("rentals", rentalService.getRentalStatistics());
+                return all;
+            default:
+                throw new ApiException(404, "No such statistics: " + kind);
+        }
+    }
+
+    private Rental findRental(String rentalId) {
+        Rental rental = rentalService.findRentalById(rentalId);
+        if (rental == null) {
+            throw new ApiException(404, "Rental with ID " + rentalId + " not found.");
+        }
+        return rental;
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + Json.quote(message != null ? message : "Unknown error") + "}";
+    }
+
+    // query string and form encoded body, the body wins if both have a parameter
+    private static Map<String, String> readParams(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        parseParams(exchange.getRequestURI().getRawQuery(), params);
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readAllBytes();
+            if (body.length > 0) {
+                parseParams(new String(body, StandardCharsets.UTF_8), params);
+            }
+        }
+        return params;
+    }
+
+    private static void parseParams(String encoded, Map<String, String> params) {
+        if (encoded == null || encoded.isEmpty()) {
+            return;
+        }
+        for (String pair : encoded.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = URLDecoder.decode(equals >= 0 ? pair.substring(0, equals) : pair, StandardCharsets.UTF_8);
+            String value = equals >= 0 ? URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8) : "";
+            params.put(name, value.trim());
+        }
+    }
+
+    private static String required(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new ApiException(400, "Missing parameter: " + name);
+        }
+        return value;
+    }
+
+    private static LocalDate date(Map<String, String> params, String name) {
+        return BatchRunner.parseDate(required(params, name));
+    }
+
+    // only true or false (any case), Boolean.valueOf would take every other value as false
+    private static Boolean optionalBoolean(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        if (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false")) {
+            return Boolean.valueOf(value);
+        }
+        throw new ApiException(400, "Parameter " + name + " must be true or false: " + value);
+    }
+
+    private static Integer optionalInt(Map<String, String> params, String name) {
+        String value = params.get(name);
+        return value == null || value.isEmpty() ? null : Integer.valueOf(value);
+    }
+
+    private static List<Map<String, Object>> toJsonCars(List<Car> cars) {
+        List<Map<String, Object>> result = new ArrayList<>(cars.size());
+        for (Car car : cars) {
+            result.add(toJson(car));
+        }
+        return result;
+    }
+
+    private static Map<String, Object> toJson(Car car) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        CarRentalState state = car.getRentalState();
+        json.put("id", car.getId());
+        json.put("make", car.getMake());
+        json.put("model", car.getModel());
+        json.put("year", car.getYear());
+        json.put("type", car.getType());
+        json.put("available", state.isAvailable());
+        json.put("renter", state.getRenter());
+        json.put("rentalEndDate", state.getEndDate());
+        return json;
+    }
+
+    private static Map<String, Object> toJson(Customer customer) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", customer.getCustomerId());
+        json.put("name", customer.getName());
+        json.put("email", customer.getEmail());
+        json.put("phone", customer.getPhone());
+        json.put("licenseNumber", customer.getLicenseNumber());
+        json.put("registrationDate", customer.getRegistrationDate());
+        return json;
+    }
+
+    private static Map<String, Object> toJson(Rental rental) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", rental.getRentalId());
+        json.put("customerId", rental.getCustomerId());
+        json.put("carId", rental.getCarId());
+        json.put("startDate", rental.getStartDate());
+        json.put("endDate", rental.getEndDate());
+        json.put("returnDate", rental.getActualReturnDate());
+        json.put("dailyRate", rental.getDailyRate());
+        json.put("totalCost", rental.getTotalCost());
+        json.put("status", rental.getStatus());
+        json.put("notes", rental.getNotes());
+        return json;
+    }
+}
@@ -0,0 +1,155 @@
+package Services;
+
+import java.util.Random;
+import java.util.function.Consumer;
+
+// augmented interval tree over half-open ranges [low, high)
+// nodes are ordered by low and balanced as a treap, every node knows the largest high in its subtree
+// so a search only descends into subtrees that can still contain an overlapping range
+class IntervalTree<T> {
+
+    private static final class Node<T> {
+        final long low;
+        final long high;
+        final long sequence;
+        final T value;
+        final int priority;
+        long maxHigh;
+        Node<T> left;
+        Node<T> right;
+
+        Node(long low, long high, long sequence, T value, int priority) {
+            this.low = low;
+            this.high = high;
+            this.sequence = sequence;
+            this.value = value;
+            this.priority = priority;
+            this.maxHigh = high;
+        }
+    }
+
+    private final Random random = new Random();
+    private Node<T> root;
+    private long nextSequence;
+    private int size;
+
+    // adds a range and returns the handle needed to remove it again
+    long insert(long low, long high, T value) {
+        long sequence = nextSequence++;
+        root = insert(root, new Node<>(low, high, sequence, value, random.nextInt()));
+        size++;
+        return sequence;
+    }
+
+    boolean remove(long low, long handle) {
+        int before = size;
+        root = remove(root, low, handle);
+        return size < before;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // calls the action for every range that overlaps [low, high)
+    void forEachOverlapping(long low, long high, Consumer<T> action) {
+        forEachOverlapping(root, low, high, action);
+    }
+
+    private void forEachOverlapping(Node<T> node, long low, long high, Consumer<T> action) {
+        if (node == null || node.maxHigh <= low) {
+            return;
+        }
+
+        forEachOverlapping(node.left, low, high, action);
+        if (node.low < high) {
+            if (node.high > low) {
+                action.accept(node.value);
+            }
+            // everything to the right starts at or after node.low
+            forEachOverlapping(node.right, low, high, action);
+        }
+    }
+
+    private Node<T> insert(Node<T> node, Node<T> added) {
+        if (node == null) {
+            return added;
+        }
+
+        if (compare(added.low, added.sequence, node) < 0) {
+            node.left = insert(node.left, added);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, added);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+        update(node);
+        return node;
+    }
+
+    private Node<T> remove(Node<T> node, long low, long sequence) {
+        if (node == null) {
+            return null;
+        }
+
+        int comparison = compare(low, sequence, node);
+        if (comparison < 0) {
+            node.left = remove(node.left, low, sequence);
+        } else if (comparison > 0) {
+            node.right = remove(node.right, low, sequence);
+        } else {
+            size--;
+            return merge(node.left, node.right);
+        }
+        update(node);
+        return node;
+    }
+
+    private Node<T> merge(Node<T> left, Node<T> right) {
+        if (left == null) return right;
+        if (right == null) return left;
+
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+
+    private static int compare(long low, long sequence, Node<?> node) {
+        int comparison = Long.compare(low, node.low);
+        return comparison != 0 ? comparison : Long.compare(sequence, node.sequence);
+    }
+
+    private Node<T> rotateRight(Node<T> node) {
+        Node<T> pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private Node<T> rotateLeft(Node<T> node) {
+        Node<T> pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static void update(Node<?> node) {
+        long maxHigh = node.high;
+        if (node.left != null) maxHigh = Math.max(maxHigh, node.left.maxHigh);
+        if (node.right != null) maxHigh = Math.max(maxHigh, node.right.maxHigh);
+        node.maxHigh = maxHigh;
+    }
+}
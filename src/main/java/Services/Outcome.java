@@ -0,0 +1,35 @@
+package Services;
+
+// what a service call did: the entity it created or changed, or the reason it refused
+// the interactive methods print the reason, the batch runner and the HTTP API report it
+public final class Outcome<T> {
+    private final T value;
+    private final String error;
+
+    private Outcome(T value, String error) {
+        this.value = value;
+        this.error = error;
+    }
+
+    static <T> Outcome<T> done(T value) {
+        return new Outcome<>(value, null);
+    }
+
+    static <T> Outcome<T> refused(String error) {
+        return new Outcome<>(null, error);
+    }
+
+    public boolean isOk() {
+        return error == null;
+    }
+
+    // null when refused
+    public T getValue() {
+        return value;
+    }
+
+    // null when done
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,80 @@
+package Services;
+
+import Models.Rental;
+
+import java.time.LocalDate;
+import java.util.*;
+
+// active rentals ordered by end date, overdue rentals are always a prefix of it
+// the overdue count is kept for the last day asked about and only moved forward when the day changes
+// synchronized, since counting moves the cached count and RentalService lets several readers in at once
+class OverdueIndex {
+
+    private final TreeMap<LocalDate, Set<Rental>> byEndDate = new TreeMap<>();
+    private int size;
+
+    // number of rentals ending before countedFor
+    private LocalDate countedFor;
+    private int overdueCount;
+
+    synchronized void add(Rental rental) {
+        if (rental.getEndDate() == null) {
+            return;
+        }
+        if (byEndDate.computeIfAbsent(rental.getEndDate(), k -> new LinkedHashSet<>()).add(rental)) {
+            size++;
+            if (countedFor != null && rental.getEndDate().isBefore(countedFor)) {
+                overdueCount++;
+            }
+        }
+    }
+
+    synchronized void remove(Rental rental) {
+        Set<Rental> bucket = rental.getEndDate() != null ? byEndDate.get(rental.getEndDate()) : null;
+        if (bucket != null && bucket.remove(rental)) {
+            size--;
+            if (bucket.isEmpty()) {
+                byEndDate.remove(rental.getEndDate());
+            }
+            if (countedFor != null && rental.getEndDate().isBefore(countedFor)) {
+                overdueCount--;
+            }
+        }
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    // rentals whose end date is before today, oldest first
+    synchronized List<Rental> getOverdue(LocalDate today) {
+        List<Rental> overdue = new ArrayList<>();
+        for (Set<Rental> bucket : byEndDate.headMap(today, false).values()) {
+            overdue.addAll(bucket);
+        }
+        return overdue;
+    }
+
+    synchronized int countOverdue(LocalDate today) {
+        if (countedFor == null || today.isBefore(countedFor)) {
+            // first query or the clock went back, count from scratch
+            overdueCount = countBetween(null, today);
+        } else if (today.isAfter(countedFor)) {
+            // only the rentals that became overdue since the last query are added
+            overdueCount += countBetween(countedFor, today);
+        }
+        countedFor = today;
+        return overdueCount;
+    }
+
+    private int countBetween(LocalDate from, LocalDate to) {
+        SortedMap<LocalDate, Set<Rental>> range = from != null
+                ? byEndDate.subMap(from, true, to, false)
+                : byEndDate.headMap(to, false);
+        int count = 0;
+        for (Set<Rental> bucket : range.values()) {
+            count += bucket.size();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,320 @@
+package Services;
+
+import Models.Rental;
+import Models.RentalStatus;
+import Utils.IdSequence;
+
+import java.time.LocalDate;
+import java.util.*;
+
+// struct-of-arrays storage for rentals that are no longer active
+// a row costs about 45 bytes: dates as epoch days, ids and notes as string table ordinals, money as cents
+// get(row) rebuilds a Rental for code that still needs objects, reports read the columns directly
+// lookups by id, customer, car and status go through row indexes, so they cost the size of the result, not the history
+class RentalArchive {
+
+    static final int NO_DATE = Integer.MIN_VALUE;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int size;
+    private int[] rentalIds = new int[INITIAL_CAPACITY];
+    private int[] customers = new int[INITIAL_CAPACITY];
+    private int[] cars = new int[INITIAL_CAPACITY];
+    private int[] startDays = new int[INITIAL_CAPACITY];
+    private int[] endDays = new int[INITIAL_CAPACITY];
+    private int[] returnDays = new int[INITIAL_CAPACITY];
+    private long[] dailyRateCents = new long[INITIAL_CAPACITY];
+    private long[] totalCostCents = new long[INITIAL_CAPACITY];
+    private byte[] statuses = new byte[INITIAL_CAPACITY];
+    private int[] notes = new int[INITIAL_CAPACITY];
+
+    // every distinct id and note is stored once, statuses as their enum ordinal
+    private final List<String> strings = new ArrayList<>();
+    private final Map<String, Integer> stringOrdinals = new HashMap<>();
+    private final int[] statusCounts = new int[RentalStatus.VALUES.length];
+
+    // open addressing table of row + 1 (0 is a free slot), hashed by the id of the row, at most half full
+    private int[] rowsById = new int[2 * INITIAL_CAPACITY];
+    // rows per customer and per car (keyed by string ordinal) and per status ordinal, in row order
+    private final RowIndex customerRows = new RowIndex();
+    private final RowIndex carRows = new RowIndex();
+    private final RowIndex statusRows = new RowIndex();
+
+    // stores the rental and returns its row, or -1 if it cannot be stored in columns
+    int append(Rental rental) {
+        if (rental.isActive() || rental.getRentalId() == null || rental.getCustomerId() == null
+                || rental.getCarId() == null || rental.getStartDate() == null || rental.getEndDate() == null) {
+            return -1;
+        }
+
+        RentalStatus status = rental.getRentalStatus();
+        if (status == null) {
+            return -1;
+        }
+
+        int startDay;
+        int endDay;
+        int returnDay;
+        try {
+            startDay = toDay(rental.getStartDate());
+            endDay = toDay(rental.getEndDate());
+            returnDay = toDay(rental.getActualReturnDate());
+        } catch (ArithmeticException e) {
+            return -1;
+        }
+
+        ensureCapacity(size + 1);
+        int row = size;
+        rentalIds[row] = encodeRentalId(rental.getRentalId());
+        customers[row] = ordinal(rental.getCustomerId());
+        cars[row] = ordinal(rental.getCarId());
+        startDays[row] = startDay;
+        endDays[row] = endDay;
+        returnDays[row] = returnDay;
+        dailyRateCents[row] = Math.round(rental.getDailyRate() * 100);
+        totalCostCents[row] = Math.round(rental.getTotalCost() * 100);
+        statuses[row] = (byte) status.ordinal();
+        notes[row] = ordinal(rental.getNotes());
+        statusCounts[status.ordinal()]++;
+        size++;
+
+        indexId(row);
+        customerRows.add(customers[row], row);
+        carRows.add(cars[row], row);
+        statusRows.add(status.ordinal(), row);
+        return row;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // a Rental with the values of the row, changes to it are not written back
+    Rental get(int row) {
+        return new Rental(
+                getRentalId(row),
+                strings.get(customers[row]),
+                strings.get(cars[row]),
+                fromDay(startDays[row]),
+                fromDay(endDays[row]),
+                fromDay(returnDays[row]),
+                dailyRateCents[row] / 100.0,
+                totalCostCents[row] / 100.0,
+                RentalStatus.VALUES[statuses[row]],
+                notes[row] >= 0 ? strings.get(notes[row]) : ""
+        );
+    }
+
+    String getRentalId(int row) {
+        int encoded = rentalIds[row];
+        return encoded >= 0 ? formatRentalId(encoded) : strings.get(-encoded - 1);
+    }
+
+    String getCarId(int row) {
+        return strings.get(cars[row]);
+    }
+
+    boolean hasStatus(int row, RentalStatus status) {
+        return statuses[row] == status.ordinal();
+    }
+
+    int getStartDay(int row) {
+        return startDays[row];
+    }
+
+    int getEndDay(int row) {
+        return endDays[row];
+    }
+
+    int getReturnDay(int row) {
+        return returnDays[row];
+    }
+
+    long getTotalCostCents(int row) {
+        return totalCostCents[row];
+    }
+
+    // row of the rental with the given id, or -1; ids are matched ignoring case like the service does
+    int findRow(String rentalId) {
+        String key = rentalId.toUpperCase(Locale.ROOT);
+        int number = parseCanonicalId(key);
+        int mask = rowsById.length - 1;
+        for (int slot = hash(number, key) & mask; rowsById[slot] != 0; slot = (slot + 1) & mask) {
+            int row = rowsById[slot] - 1;
+            int encoded = rentalIds[row];
+            if ((number >= 0 && encoded == number)
+                    || (encoded < 0 && strings.get(-encoded - 1).equalsIgnoreCase(rentalId))) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    int countWithStatus(RentalStatus status) {
+        return statusCounts[status.ordinal()];
+    }
+
+    List<Rental> withStatus(RentalStatus status) {
+        return rows(statusRows, status.ordinal());
+    }
+
+    List<Rental> forCustomer(String customerId) {
+        Integer ordinal = stringOrdinals.get(customerId);
+        return ordinal != null ? rows(customerRows, ordinal) : new ArrayList<>();
+    }
+
+    List<Rental> forCar(String carId) {
+        Integer ordinal = stringOrdinals.get(carId);
+        return ordinal != null ? rows(carRows, ordinal) : new ArrayList<>();
+    }
+
+    private List<Rental> rows(RowIndex index, int key) {
+        int count = index.count(key);
+        int[] rows = index.rows(key);
+        List<Rental> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(get(rows[i]));
+        }
+        return result;
+    }
+
+    List<Rental> getAll() {
+        List<Rental> result = new ArrayList<>(size);
+        for (int row = 0; row < size; row++) {
+            result.add(get(row));
+        }
+        return result;
+    }
+
+    // the first row stored with an id wins, as it did when findRow scanned the rows
+    private void indexId(int row) {
+        if (findRow(getRentalId(row)) >= 0) {
+            return;
+        }
+        if (2 * size > rowsById.length) {
+            int[] old = rowsById;
+            rowsById = new int[2 * old.length];
+            for (int entry : old) {
+                if (entry != 0) {
+                    insertId(entry - 1);
+                }
+            }
+        }
+        insertId(row);
+    }
+
+    private void insertId(int row) {
+        int encoded = rentalIds[row];
+        int mask = rowsById.length - 1;
+        int slot;
+        if (encoded >= 0) {
+            slot = hash(encoded, null) & mask;
+        } else {
+            String key = strings.get(-encoded - 1).toUpperCase(Locale.ROOT);
+            slot = hash(parseCanonicalId(key), key) & mask;
+        }
+        while (rowsById[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        rowsById[slot] = row + 1;
+    }
+
+    // ids hash by the number of their upper case form, or by that form if it is not canonical (e.g. r001 as R001)
+    private static int hash(int number, String upperCaseId) {
+        int h = number >= 0 ? number : upperCaseId.hashCode();
+        return h ^ (h >>> 16) ^ (h * 0x9E3779B9);
+    }
+
+    // R001 style ids are stored as their number, anything else as a negative string ordinal
+    private int encodeRentalId(String rentalId) {
+        int number = parseCanonicalId(rentalId);
+        return number >= 0 ? number : -ordinal(rentalId) - 1;
+    }
+
+    // the number of an id that formatRentalId gives back unchanged, or -1
+    private static int parseCanonicalId(String rentalId) {
+        if (rentalId.length() < 4 || rentalId.length() > 10 || rentalId.charAt(0) != 'R') {
+            return -1;
+        }
+        int number = 0;
+        for (int i = 1; i < rentalId.length(); i++) {
+            int digit = rentalId.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            number = number * 10 + digit;
+        }
+        return formatRentalId(number).equals(rentalId) ? number : -1;
+    }
+
+    private static String formatRentalId(int number) {
+        return IdSequence.format("R", number);
+    }
+
+    private int ordinal(String value) {
+        if (value == null) {
+            return -1;
+        }
+        Integer ordinal = stringOrdinals.get(value);
+        if (ordinal == null) {
+            ordinal = strings.size();
+            strings.add(value);
+            stringOrdinals.put(value, ordinal);
+        }
+        return ordinal;
+    }
+
+    private static int toDay(LocalDate date) {
+        return date != null ? Math.toIntExact(date.toEpochDay()) : NO_DATE;
+    }
+
+    private static LocalDate fromDay(int day) {
+        return day != NO_DATE ? LocalDate.ofEpochDay(day) : null;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= rentalIds.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, rentalIds.length * 2);
+        rentalIds = Arrays.copyOf(rentalIds, newCapacity);
+        customers = Arrays.copyOf(customers, newCapacity);
+        cars = Arrays.copyOf(cars, newCapacity);
+        startDays = Arrays.copyOf(startDays, newCapacity);
+        endDays = Arrays.copyOf(endDays, newCapacity);
+        returnDays = Arrays.copyOf(returnDays, newCapacity);
+        dailyRateCents = Arrays.copyOf(dailyRateCents, newCapacity);
+        totalCostCents = Arrays.copyOf(totalCostCents, newCapacity);
+        statuses = Arrays.copyOf(statuses, newCapacity);
+        notes = Arrays.copyOf(notes, newCapacity);
+    }
+
+    // growable int lists of rows, one per small non-negative key
+    private static final class RowIndex {
+        private int[][] rows = new int[16][];
+        private int[] counts = new int[16];
+
+        void add(int key, int row) {
+            if (key >= rows.length) {
+                int newLength = Math.max(key + 1, rows.length * 2);
+                rows = Arrays.copyOf(rows, newLength);
+                counts = Arrays.copyOf(counts, newLength);
+            }
+            int[] list = rows[key];
+            if (list == null) {
+                list = rows[key] = new int[4];
+            } else if (counts[key] == list.length) {
+                list = rows[key] = Arrays.copyOf(list, list.length * 2);
+            }
+            list[counts[key]++] = row;
+        }
+
+        int count(int key) {
+            return key < counts.length ? counts[key] : 0;
+        }
+
+        int[] rows(int key) {
+            return key < rows.length ? rows[key] : null;
+        }
+    }
+}
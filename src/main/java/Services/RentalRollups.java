@@ -0,0 +1,229 @@
+package Services;
+
+import Models.Car;
+import Models.Rental;
+import Models.RentalStatus;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+// precomputed revenue and utilization per day, for the whole fleet and per car type and make
+// days are grouped into sparse blocks of 32, so years of history stay small and a range query only merges buckets
+// revenue is booked on the return day, every day a car was out counts as one rented car-day
+// reports may run while rentals complete, so adding and reading are synchronized
+public class RentalRollups {
+
+    public enum Granularity { DAY, WEEK, MONTH }
+
+    private static final int BLOCK_SHIFT = 5;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+    private static final String UNKNOWN = "Unknown";
+
+    // totals of one period
+    public static class Totals {
+        private long revenueCents;
+        private int completedRentals;
+        private long rentedCarDays;
+
+        public double getRevenue() {
+            return revenueCents / 100.0;
+        }
+
+        public int getCompletedRentals() {
+            return completedRentals;
+        }
+
+        public long getRentedCarDays() {
+            return rentedCarDays;
+        }
+    }
+
+    private static class Block {
+        final long[] revenueCents = new long[BLOCK_SIZE];
+        final int[] completedRentals = new int[BLOCK_SIZE];
+        final int[] rentedCarDays = new int[BLOCK_SIZE];
+
+        void add(Block other) {
+            for (int i = 0; i < BLOCK_SIZE; i++) {
+                revenueCents[i] += other.revenueCents[i];
+                completedRentals[i] += other.completedRentals[i];
+                rentedCarDays[i] += other.rentedCarDays[i];
+            }
+        }
+    }
+
+    // one time series of day buckets
+    private static class Series {
+        final TreeMap<Long, Block> blocks = new TreeMap<>();
+
+        Block block(long epochDay) {
+            return blocks.computeIfAbsent(Math.floorDiv(epochDay, BLOCK_SIZE), k -> new Block());
+        }
+
+        void add(long returnDay, long revenueCents, long firstDay, long lastDay) {
+            Block returnBlock = block(returnDay);
+            int returnSlot = Math.floorMod(returnDay, BLOCK_SIZE);
+            returnBlock.revenueCents[returnSlot] += revenueCents;
+            returnBlock.completedRentals[returnSlot]++;
+
+            Block block = null;
+            for (long day = firstDay; day <= lastDay; day++) {
+                int slot = Math.floorMod(day, BLOCK_SIZE);
+                if (block == null || slot == 0) {
+                    block = block(day);
+                }
+                block.rentedCarDays[slot]++;
+            }
+        }
+
+        void add(Series other) {
+            for (Map.Entry<Long, Block> entry : other.blocks.entrySet()) {
+                blocks.computeIfAbsent(entry.getKey(), k -> new Block()).add(entry.getValue());
+            }
+        }
+
+        // merges the day buckets of [from, to] into one bucket per period
+        SortedMap<LocalDate, Totals> report(LocalDate from, LocalDate to, Granularity granularity) {
+            SortedMap<LocalDate, Totals> periods = new TreeMap<>();
+            long firstDay = from.toEpochDay();
+            long lastDay = to.toEpochDay();
+
+            SortedMap<Long, Block> range = blocks.subMap(Math.floorDiv(firstDay, BLOCK_SIZE),
+                    Math.floorDiv(lastDay, BLOCK_SIZE) + 1);
+            for (Map.Entry<Long, Block> entry : range.entrySet()) {
+                Block block = entry.getValue();
+                long blockStart = entry.getKey() * BLOCK_SIZE;
+                for (int slot = 0; slot < BLOCK_SIZE; slot++) {
+                    long day = blockStart + slot;
+                    if (day < firstDay || day > lastDay) {
+                        continue;
+                    }
+                    if (block.revenueCents[slot] == 0 && block.completedRentals[slot] == 0
+                            && block.rentedCarDays[slot] == 0) {
+                        continue;
+                    }
+
+                    Totals totals = periods.computeIfAbsent(periodStart(LocalDate.ofEpochDay(day), granularity),
+                            k -> new Totals());
+                    totals.revenueCents += block.revenueCents[slot];
+                    totals.completedRentals += block.completedRentals[slot];
+                    totals.rentedCarDays += block.rentedCarDays[slot];
+                }
+            }
+            return periods;
+        }
+    }
+
+    private final Series fleet = new Series();
+    private final Map<String, Series> byType = new HashMap<>();
+    private final Map<String, Series> byMake = new HashMap<>();
+
+    // adds a completed rental, anything else is ignored
+    public synchronized void add(Rental rental, Car car) {
+        if (rental.getRentalStatus() != RentalStatus.COMPLETED || rental.getStartDate() == null) {
+            return;
+        }
+
+        LocalDate returnDate = rental.getActualReturnDate() != null ? rental.getActualReturnDate() : rental.getEndDate();
+        if (returnDate == null) {
+            return;
+        }
+
+        add(returnDate.toEpochDay(), Math.round(rental.getTotalCost() * 100), rental.getStartDate().toEpochDay(), car);
+    }
+
+    // adds a completed rental straight from the archive columns
+    synchronized void addArchived(RentalArchive archive, int row, Car car) {
+        if (!archive.hasStatus(row, RentalStatus.COMPLETED)) {
+            return;
+        }
+
+        int returnDay = archive.getReturnDay(row) != RentalArchive.NO_DATE ? archive.getReturnDay(row) : archive.getEndDay(row);
+        add(returnDay, archive.getTotalCostCents(row), archive.getStartDay(row), car);
+    }
+
+    private void add(long returnDay, long revenueCents, long firstDay, Car car) {
+        // a car returned on the day it was picked up still was out that day
+        long lastDay = Math.max(firstDay, returnDay - 1);
+
+        String type = car != null && car.getType() != null ? car.getType() : UNKNOWN;
+        String make = car != null && car.getMake() != null ? car.getMake() : UNKNOWN;
+
+        fleet.add(returnDay, revenueCents, firstDay, lastDay);
+        byType.computeIfAbsent(type, k -> new Series()).add(returnDay, revenueCents, firstDay, lastDay);
+        byMake.computeIfAbsent(make, k -> new Series()).add(returnDay, revenueCents, firstDay, lastDay);
+    }
+
+    public synchronized void merge(RentalRollups other) {
+        fleet.add(other.fleet);
+        other.byType.forEach((type, series) -> byType.computeIfAbsent(type, k -> new Series()).add(series));
+        other.byMake.forEach((make, series) -> byMake.computeIfAbsent(make, k -> new Series()).add(series));
+    }
+
+    // builds the rollups from the rental history in one parallel pass, each worker fills its own copy
+    public static RentalRollups rebuild(Collection<Rental> rentals, Function<String, Car> carLookup) {
+        return rentals.parallelStream()
+                .filter(rental -> rental.getRentalStatus() == RentalStatus.COMPLETED)
+                .collect(RentalRollups::new,
+                        (rollups, rental) -> rollups.add(rental, carLookup.apply(rental.getCarId())),
+                        RentalRollups::merge);
+    }
+
+    // same as above, the archived history is read from its columns without building Rental objects
+    static RentalRollups rebuild(RentalArchive archive, Collection<Rental> rentals, Function<String, Car> carLookup) {
+        RentalRollups rollups = IntStream.range(0, archive.size()).parallel()
+                .collect(RentalRollups::new,
+                        (partial, row) -> partial.addArchived(archive, row, carLookup.apply(archive.getCarId(row))),
+                        RentalRollups::merge);
+        rollups.merge(rebuild(rentals, carLookup));
+        return rollups;
+    }
+
+    // fleet totals per period in [from, to]
+    public synchronized SortedMap<LocalDate, Totals> report(LocalDate from, LocalDate to, Granularity granularity) {
+        return fleet.report(from, to, granularity);
+    }
+
+    // totals per car type and period in [from, to]
+    public synchronized Map<String, SortedMap<LocalDate, Totals>> reportByType(LocalDate from, LocalDate to, Granularity granularity) {
+        return report(byType, from, to, granularity);
+    }
+
+    // totals per car make and period in [from, to]
+    public synchronized Map<String, SortedMap<LocalDate, Totals>> reportByMake(LocalDate from, LocalDate to, Granularity granularity) {
+        return report(byMake, from, to, granularity);
+    }
+
+    private static Map<String, SortedMap<LocalDate, Totals>> report(Map<String, Series> groups, LocalDate from,
+                                                                    LocalDate to, Granularity granularity) {
+        Map<String, SortedMap<LocalDate, Totals>> reports = new TreeMap<>();
+        groups.forEach((group, series) -> reports.put(group, series.report(from, to, granularity)));
+        return reports;
+    }
+
+    public static LocalDate periodStart(LocalDate date, Granularity granularity) {
+        switch (granularity) {
+            case WEEK:
+                return date.with(DayOfWeek.MONDAY);
+            case MONTH:
+                return date.withDayOfMonth(1);
+            default:
+                return date;
+        }
+    }
+
+    // last day of the period starting at the given date
+    public static LocalDate periodEnd(LocalDate periodStart, Granularity granularity) {
+        switch (granularity) {
+            case WEEK:
+                return periodStart.plusDays(6);
+            case MONTH:
+                return periodStart.plusMonths(1).minusDays(1);
+            default:
+                return periodStart;
+        }
+    }
+}
@@ -1,21 +1,53 @@
 package Services;
 
 import Models.Car;
+import Models.CarRentalState;
 import Models.Customer;
 import Models.Rental;
+import Models.RentalStatus;
+import Utils.ChangeTracker;
+import Utils.IdSequence;
 import Utils.InputValidator;
+import interfaces.MutationListener;
 
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
-public class RentalService {
+public final class RentalService {
 
+    // rentals kept as objects: the active ones and the ones that ended since the last archiving
     private List<Rental> rentals;
+    // inactive rentals in columnar form
+    private final RentalArchive archive = new RentalArchive();
+    private final Map<String, Rental> rentalsById = new HashMap<>();
+    // secondary indexes, kept in sync by createRental, completeRental and cancelRental
+    private final Map<String, List<Rental>> rentalsByCustomer = new HashMap<>();
+    private final Map<String, List<Rental>> rentalsByCar = new HashMap<>();
+    private final Map<RentalStatus, Set<Rental>> rentalsByStatus = new EnumMap<>(RentalStatus.class);
+    private final OverdueIndex overdueIndex = new OverdueIndex();
+    private final ReservationCalendar calendar = new ReservationCalendar();
+
+    // running totals over the completed rentals, the counts per status come from the status index
+    private double completedRevenue;
+    private long completedDurationDays;
+    private RentalRollups rollups = new RentalRollups();
     private CarService carService;
     private CustomerService customerService;
-    private static final double DEFAULT_DAILY_RATE = 50.0;
+    private final ChangeTracker changeTracker = new ChangeTracker();
+    private final IdSequence rentalIds = new IdSequence("R");
+    // guards the rental lists, indexes and totals, it is only held for the index updates
+    // a booking, return or cancellation holds the stripe of its car (CarService.lockFor) from its checks to the
+    // status change, so bookings of different cars only meet for the index update; the car itself is claimed and
+    // returned by compare-and-set (see Car), so reading its state never waits
+    // lock order: car stripe, then lock, then the locks of CarService and CustomerService
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // epoch day up to which the cars of started reservations have been handed over
+    private final AtomicLong handedOverThrough = new AtomicLong(Long.MIN_VALUE);
+    static final double DEFAULT_DAILY_RATE = 50.0;
     private static final double LATE_FEE_MULTIPLIER = 0.5; // late fee (50% extra)
 
 
@@ -23,63 +55,251 @@ public class RentalService {
         this.rentals = new ArrayList<>();
         this.carService = carService;
         this.customerService = customerService;
+        carService.setAvailabilityCheck(this::handOverStartedReservations);
     }
 
     public RentalService(List<Rental> rentals, CarService carService, CustomerService customerService) {
-        this.rentals = rentals != null ? new ArrayList<>(rentals) : new ArrayList<>();
+        this.rentals = new ArrayList<>();
         this.carService = carService;
         this.customerService = customerService;
+        carService.setAvailabilityCheck(this::handOverStartedReservations);
+
+        // history goes straight into the archive, only active rentals stay objects
+        if (rentals != null) {
+            for (Rental rental : rentals) {
+                rentalIds.observe(rental.getRentalId());
+                if (archive.append(rental) >= 0) {
+                    addToTotals(rental);
+                } else {
+                    this.rentals.add(rental);
+                    rentalsById.putIfAbsent(idKey(rental.getRentalId()), rental);
+                    index(rental);
+                    book(rental);
+                }
+            }
+        }
+        rebuildRollups();
+    }
+
+    // moves the rentals that have ended into the archive, returns how many were moved
+    public int archiveInactiveRentals() {
+        lock.writeLock().lock();
+        try {
+            int archived = 0;
+            Iterator<Rental> iterator = rentals.iterator();
+            while (iterator.hasNext()) {
+                Rental rental = iterator.next();
+                if (!rental.isActive() && archive.append(rental) >= 0) {
+                    iterator.remove();
+                    unindex(rental);
+                    archived++;
+                }
+            }
+            return archived;
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
-    // creates a new rental
+    private void index(Rental rental) {
+        rentalsByCustomer.computeIfAbsent(rental.getCustomerId(), k -> new ArrayList<>()).add(rental);
+        rentalsByCar.computeIfAbsent(rental.getCarId(), k -> new ArrayList<>()).add(rental);
+        addToStatusBucket(rental);
+        addToTotals(rental);
+        if (rental.isActive()) {
+            overdueIndex.add(rental);
+        }
+    }
+
+    // puts an active rental in the calendar of its car, rentals loaded from the file may overlap
+    private void book(Rental rental) {
+        if (rental.isActive() && !calendar.add(rental)) {
+            System.out.println("Warning: rental " + rental.getRentalId() + " overlaps another booking of car "
+                    + rental.getCarId() + ".");
+        }
+    }
+
+    // drops an archived rental from the object indexes, its totals stay counted
+    private void unindex(Rental rental) {
+        rentalsById.remove(idKey(rental.getRentalId()), rental);
+        removeFromBucket(rentalsByCustomer, rental.getCustomerId(), rental);
+        removeFromBucket(rentalsByCar, rental.getCarId(), rental);
+        Set<Rental> bucket = rentalsByStatus.get(rental.getRentalStatus());
+        if (bucket != null) {
+            bucket.remove(rental);
+        }
+    }
+
+    // a rental without a status is in no bucket
+    private void addToStatusBucket(Rental rental) {
+        if (rental.getRentalStatus() != null) {
+            rentalsByStatus.computeIfAbsent(rental.getRentalStatus(), k -> new LinkedHashSet<>()).add(rental);
+        }
+    }
+
+    private static void removeFromBucket(Map<String, List<Rental>> index, String key, Rental rental) {
+        List<Rental> bucket = index.get(key);
+        if (bucket != null) {
+            bucket.removeIf(r -> r == rental);
+            if (bucket.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    // moves the rental to the bucket of its current status
+    private void statusChanged(Rental rental, RentalStatus oldStatus) {
+        Set<Rental> bucket = rentalsByStatus.get(oldStatus);
+        if (bucket != null) {
+            bucket.remove(rental);
+        }
+        // a completed rental never changes status again, so the totals only ever grow
+        addToTotals(rental);
+        addToStatusBucket(rental);
+        if (!rental.isActive()) {
+            overdueIndex.remove(rental);
+            calendar.remove(rental);
+        }
+    }
+
+    private void addToTotals(Rental rental) {
+        if (rental.getRentalStatus() == RentalStatus.COMPLETED) {
+            completedRevenue += rental.getTotalCost();
+            completedDurationDays += rental.getActualDuration();
+        }
+    }
+
+    // archived rentals first, then the ones still kept as objects
+    private List<Rental> withStatus(RentalStatus status) {
+        lock.readLock().lock();
+        try {
+            List<Rental> result = archive.withStatus(status);
+            Set<Rental> bucket = rentalsByStatus.get(status);
+            if (bucket != null) {
+                result.addAll(bucket);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int countWithStatus(RentalStatus status) {
+        lock.readLock().lock();
+        try {
+            Set<Rental> bucket = rentalsByStatus.get(status);
+            return archive.countWithStatus(status) + (bucket != null ? bucket.size() : 0);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ids are matched ignoring case, the same way equalsIgnoreCase did
+    private static String idKey(String id) {
+        return id.toUpperCase(Locale.ROOT);
+    }
+
+    // creates a new rental and prints the outcome
     public Rental createRental(String customerId, String carId, LocalDate startDate,
                                LocalDate endDate, double dailyRate) {
+        Outcome<Rental> outcome = tryCreateRental(customerId, carId, startDate, endDate, dailyRate);
+        Rental rental = outcome.getValue();
+        if (rental == null) {
+            System.out.println(outcome.getError());
+        } else if (rental.getStartDate().isAfter(LocalDate.now())) {
+            System.out.println("Reservation created successfully: " + rental);
+        } else {
+            System.out.println("Rental created successfully: " + rental);
+        }
+        return rental;
+    }
+
+    // creates a new rental, or tells why it cannot
+    public Outcome<Rental> tryCreateRental(String customerId, String carId, LocalDate startDate,
+                                           LocalDate endDate, double dailyRate) {
+        handOverStartedReservations();
 
         // validate customer exists
         Customer customer = customerService.findCustomerById(customerId);
         if (customer == null) {
-            System.out.println("Customer with ID " + customerId + " not found.");
-            return null;
+            return Outcome.refused("Customer with ID " + customerId + " not found.");
         }
 
-        // validate car exists and is available
+        // validate car exists
         Car car = carService.findCarById(carId);
         if (car == null) {
-            System.out.println("Car with ID " + carId + " not found.");
-            return null;
+            return Outcome.refused("Car with ID " + carId + " not found.");
         }
 
-        if (!car.isAvailable()) {
-            System.out.println("Car " + carId + " is not available. Currently rented to: " + car.getCurrentRenter());
-            return null;
+        if (!InputValidator.isValidDailyRate(dailyRate)) {
+            return Outcome.refused("Daily rate must be a positive amount.");
         }
 
         // validate dates
-        if (startDate.isBefore(LocalDate.now())) {
-            System.out.println("Start date cannot be in the past.");
-            return null;
+        LocalDate today = LocalDate.now();
+        if (startDate.isBefore(today)) {
+            return Outcome.refused("Start date cannot be in the past.");
         }
 
         if (endDate.isBefore(startDate) || endDate.equals(startDate)) {
-            System.out.println("End date must be after start date.");
-            return null;
+            return Outcome.refused("End date must be after start date.");
         }
 
-        // generates rental ID
-        String rentalId = generateNextRentalId();
+        // from the conflict check to the index update the car's stripe is held, so two bookings of the same car
+        // cannot both pass the checks, while bookings of other cars go on in parallel
+        boolean startsToday = !startDate.isAfter(today);
+        Rental rental;
+        Lock carLock = carService.lockFor(car.getId());
+        carLock.lock();
+        try {
+            // validate the car is free for the whole period
+            Rental conflict = calendar.findConflict(car.getId(), startDate, endDate);
+            if (conflict != null) {
+                return Outcome.refused(conflictMessage(carId, conflict));
+            }
 
-        // creates rental
-        Rental rental = new Rental(rentalId, customerId, carId, startDate, endDate, dailyRate);
+            // a car that is overdue has no known return date
+            CarRentalState state = car.getRentalState();
+            if (!state.isAvailable() && state.getEndDate() != null && state.getEndDate().isBefore(today)) {
+                return Outcome.refused("Car " + carId + " is overdue. Currently rented to: " + state.getRenter());
+            }
 
-        // rent the car
-        if (car.rent(customerId, startDate, endDate)) {
-            rentals.add(rental);
-            System.out.println("Rental created successfully: " + rental);
-            return rental;
-        } else {
-            System.out.println("Failed to rent car.");
-            return null;
+            // a rental starting today claims the car right now, a later one only reserves it
+            if (startsToday && !car.rent(customerId, startDate, endDate)) {
+                return Outcome.refused("Car " + carId + " is not available. Currently rented to: " + car.getCurrentRenter());
+            }
+
+            rental = new Rental(generateNextRentalId(), customerId, carId, startDate, endDate, dailyRate);
+            book(rental);
+            lock.writeLock().lock();
+            try {
+                rentals.add(rental);
+                rentalsById.put(idKey(rental.getRentalId()), rental);
+                index(rental);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            carLock.unlock();
+        }
+
+        recordMutation(MutationListener.Type.RENTAL_CREATED, rental, startsToday ? car : null);
+        return Outcome.done(rental);
+    }
+
+    private static String conflictMessage(String carId, Rental conflict) {
+        return "Car " + carId + " is already booked from " + conflict.getStartDate() + " to "
+                + conflict.getEndDate() + " (rental " + conflict.getRentalId() + ").";
+    }
+
+    // cars without any booking in [startDate, endDate), overdue cars are never free
+    public List<Car> getCarsFreeBetween(LocalDate startDate, LocalDate endDate) {
+        handOverStartedReservations();
+        Set<String> busyCarIds = calendar.getBookedCarIds(startDate, endDate);
+        for (Rental rental : overdueIndex.getOverdue(LocalDate.now())) {
+            busyCarIds.add(rental.getCarId());
         }
+        return carService.getCarsExcluding(busyCarIds);
     }
 
     // creates a new rental through console input
@@ -87,10 +307,14 @@ public class RentalService {
         try {
             InputValidator.displaySection("Create New Rental");
 
-            // shows available cars
-            List<Car> availableCars = carService.getAvailableCars();
+            // get rental dates
+            LocalDate startDate = InputValidator.readFutureDate("Enter rental start date");
+            LocalDate endDate = InputValidator.readDateAfter("Enter rental end date", startDate);
+
+            // shows the cars free for the whole period
+            List<Car> availableCars = getCarsFreeBetween(startDate, endDate);
             if (availableCars.isEmpty()) {
-                System.out.println("No cars available for rental.");
+                System.out.println("No cars available for rental in this period.");
                 return false;
             }
 
@@ -100,7 +324,7 @@ public class RentalService {
             // gets car selection
             String carId = InputValidator.readCarId("Enter car ID to rent: ");
             Car selectedCar = carService.findCarById(carId);
-            if (selectedCar == null || !selectedCar.isAvailable()) {
+            if (selectedCar == null || !availableCars.contains(selectedCar)) {
                 System.out.println("Invalid car ID or car not available.");
                 return false;
             }
@@ -128,18 +352,11 @@ public class RentalService {
                     System.out.println("Failed to create customer.");
                     return false;
                 }
-                customerId = customerService.generateNextCustomerId();
                 // get the actual last added customer ID
                 List<Customer> customers = customerService.getAllCustomers();
-                if (!customers.isEmpty()) {
-                    customerId = customers.get(customers.size() - 1).getCustomerId();
-                }
+                customerId = customers.get(customers.size() - 1).getCustomerId();
             }
 
-            // get rental dates
-            LocalDate startDate = InputValidator.readFutureDate("Enter rental start date");
-            LocalDate endDate = InputValidator.readDateAfter("Enter rental end date", startDate);
-
             // sets daily rate (or use default)
             double dailyRate = DEFAULT_DAILY_RATE;
             boolean customRate = InputValidator.readYesNo("Use custom daily rate? (default: $" + DEFAULT_DAILY_RATE + ")");
@@ -170,41 +387,76 @@ public class RentalService {
         }
     }
 
-    // completes a rental
+    // completes a rental and prints the summary
     public boolean completeRental(String rentalId, LocalDate returnDate) {
-        Rental rental = findRentalById(rentalId);
+        Outcome<Rental> outcome = tryCompleteRental(rentalId, returnDate);
+        Rental rental = outcome.getValue();
         if (rental == null) {
-            System.out.println("Rental with ID " + rentalId + " not found.");
+            System.out.println(outcome.getError());
             return false;
         }
 
+        // show rental summary
+        System.out.println("Rental completed successfully!");
+        displayRentalSummary(rental);
+
+        // check for late fees
+        if (returnDate.isAfter(rental.getEndDate())) {
+            long lateDays = ChronoUnit.DAYS.between(rental.getEndDate(), returnDate);
+            System.out.printf("Car returned %d day(s) late. Late fees applied.%n", lateDays);
+        }
+        return true;
+    }
+
+    // completes a rental, or tells why it cannot
+    public Outcome<Rental> tryCompleteRental(String rentalId, LocalDate returnDate) {
+        handOverStartedReservations();
+        Rental rental = findRentalById(rentalId);
+        if (rental == null) {
+            return Outcome.refused("Rental with ID " + rentalId + " not found.");
+        }
+
         if (!rental.isActive()) {
-            System.out.println("Rental " + rentalId + " is not active.");
-            return false;
+            return Outcome.refused("Rental " + rentalId + " is not active.");
         }
 
-        // return the car
+        if (rental.getStartDate().isAfter(LocalDate.now())) {
+            return Outcome.refused("Rental " + rentalId + " has not started yet, cancel the reservation instead.");
+        }
+
+        // the car is returned and the rental completed under the car's stripe: the hand-over of started
+        // reservations takes the same stripe, so it never sees the car back while the rental is still active;
+        // of two threads completing it, only one gets the car back
         Car car = carService.findCarById(rental.getCarId());
-        if (car != null && car.returnItem()) {
-            // complete the rental
-            if (rental.completeRental(returnDate)) {
-
-                // show rental summary
-                System.out.println("Rental completed successfully!");
-                displayRentalSummary(rental);
-
-                // check for late fees
-                if (returnDate.isAfter(rental.getEndDate())) {
-                    long lateDays = ChronoUnit.DAYS.between(rental.getEndDate(), returnDate);
-                    System.out.printf("Car returned %d day(s) late. Late fees applied.%n", lateDays);
+        boolean completed = false;
+        if (car != null) {
+            Lock carLock = carService.lockFor(rental.getCarId());
+            carLock.lock();
+            try {
+                if (rental.isActive() && car.returnItem(rental.getCustomerId(), rental.getStartDate())) {
+                    lock.writeLock().lock();
+                    try {
+                        RentalStatus oldStatus = rental.getRentalStatus();
+                        completed = rental.completeRental(returnDate);
+                        if (completed) {
+                            statusChanged(rental, oldStatus);
+                            rollups.add(rental, car);
+                        }
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
                 }
-
-                return true;
+            } finally {
+                carLock.unlock();
             }
         }
 
-        System.out.println("Failed to complete rental.");
-        return false;
+        if (completed) {
+            handOverCar(car);
+            recordMutation(MutationListener.Type.RENTAL_COMPLETED, rental, car);
+            return Outcome.done(rental);
+        }
+        return Outcome.refused("Failed to complete rental.");
     }
 
     // interactive method to complete the rental
@@ -245,80 +497,182 @@ public class RentalService {
         }
     }
 
-    // cancels a rental
+    // cancels a rental and prints the outcome
     public boolean cancelRental(String rentalId, String reason) {
+        Outcome<Rental> outcome = tryCancelRental(rentalId, reason);
+        System.out.println(outcome.isOk() ? "Rental cancelled: " + outcome.getValue() : outcome.getError());
+        return outcome.isOk();
+    }
+
+    // cancels a rental, or tells why it cannot
+    public Outcome<Rental> tryCancelRental(String rentalId, String reason) {
+        handOverStartedReservations();
         Rental rental = findRentalById(rentalId);
         if (rental == null) {
-            System.out.println("Rental with ID " + rentalId + " not found.");
-            return false;
+            return Outcome.refused("Rental with ID " + rentalId + " not found.");
         }
 
-        if (!rental.isActive()) {
-            System.out.println("Cannot cancel rental " + rentalId + " - it is not active.");
-            return false;
+        // the status change and the return of the car happen under the car's stripe, so a hand-over of the car
+        // (see synchronizeData) comes either before and the car is given back here, or after and sees the cancellation
+        Car car = carService.findCarById(rental.getCarId());
+        boolean cancelled;
+        boolean returned;
+        Lock carLock = carService.lockFor(rental.getCarId());
+        carLock.lock();
+        try {
+            lock.writeLock().lock();
+            try {
+                RentalStatus oldStatus = rental.getRentalStatus();
+                cancelled = rental.isActive() && rental.cancelRental(reason);
+                if (cancelled) {
+                    statusChanged(rental, oldStatus);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            // return the car, a reservation that has not started yet never had it
+            returned = cancelled && car != null && !rental.getStartDate().isAfter(LocalDate.now())
+                    && car.returnItem(rental.getCustomerId(), rental.getStartDate());
+        } finally {
+            carLock.unlock();
         }
 
-        // return the car
-        Car car = carService.findCarById(rental.getCarId());
-        if (car != null) {
-            car.returnItem();
+        if (!cancelled) {
+            return Outcome.refused("Cannot cancel rental " + rentalId + " - it is not active.");
         }
 
-        // cancel the rental
-        if (rental.cancelRental(reason)) {
-            System.out.println("Rental cancelled: " + rental);
-            return true;
+        if (returned) {
+            handOverCar(car);
+        } else {
+            car = null;
         }
 
-        return false;
+        recordMutation(MutationListener.Type.RENTAL_CANCELLED, rental, car);
+        return Outcome.done(rental);
+    }
+
+    // pending changes to rentals
+    public List<ChangeTracker.Change> drainChanges() {
+        return changeTracker.drain();
+    }
+
+    public int getPendingChangeCount() {
+        return changeTracker.size();
+    }
+
+    public void stopTrackingChanges() {
+        changeTracker.stopTracking();
+    }
+
+    ChangeTracker getChangeTracker() {
+        return changeTracker;
+    }
+
+    // tracks the rental, the car whose availability it changed is tracked by the car service
+    private void recordMutation(MutationListener.Type type, Rental rental, Car car) {
+        changeTracker.onMutation(type, rental.getRentalId(), rental::toCSV);
+        if (car != null) {
+            carService.carChanged(car);
+        }
     }
 
     // finds a rental by id
     public Rental findRentalById(String rentalId) {
-        return rentals.stream()
-                .filter(rental -> rental.getRentalId().equalsIgnoreCase(rentalId))
-                .findFirst()
-                .orElse(null);
+        if (rentalId == null) {
+            return null;
+        }
+
+        lock.readLock().lock();
+        try {
+            Rental rental = rentalsById.get(idKey(rentalId));
+            if (rental == null) {
+                int row = archive.findRow(rentalId);
+                rental = row >= 0 ? archive.get(row) : null;
+            }
+            return rental;
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
-    // gets all the rentals in the system
+    // gets all the rentals in the system, archived ones are rebuilt as objects
     public List<Rental> getAllRentals() {
-        return new ArrayList<>(rentals);
+        lock.readLock().lock();
+        try {
+            List<Rental> allRentals = archive.getAll();
+            allRentals.addAll(rentals);
+            return allRentals;
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     // gets all the active rentals
     public List<Rental> getActiveRentals() {
-        return rentals.stream()
-                .filter(Rental::isActive)
-                .collect(Collectors.toList());
+        handOverStartedReservations();
+        return withStatus(RentalStatus.ACTIVE);
     }
 
     // gets all the completed rentals
     public List<Rental> getCompletedRentals() {
-        return rentals.stream()
-                .filter(rental -> "COMPLETED".equals(rental.getStatus()))
-                .collect(Collectors.toList());
+        return withStatus(RentalStatus.COMPLETED);
+    }
+
+    public int getRentalCount() {
+        lock.readLock().lock();
+        try {
+            return archive.size() + rentals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getActiveRentalCount() {
+        return countWithStatus(RentalStatus.ACTIVE);
+    }
+
+    public int getCompletedRentalCount() {
+        return countWithStatus(RentalStatus.COMPLETED);
     }
 
     // gets all the overdue rentals
     public List<Rental> getOverdueRentals() {
-        return rentals.stream()
-                .filter(Rental::isOverdue)
-                .collect(Collectors.toList());
+        return overdueIndex.getOverdue(LocalDate.now());
+    }
+
+    public int getOverdueCount() {
+        return overdueIndex.countOverdue(LocalDate.now());
     }
 
     // gets rental for a specific customer
     public List<Rental> getRentalsByCustomer(String customerId) {
-        return rentals.stream()
-                .filter(rental -> rental.getCustomerId().equals(customerId))
-                .collect(Collectors.toList());
+        lock.readLock().lock();
+        try {
+            List<Rental> result = archive.forCustomer(customerId);
+            List<Rental> customerRentals = rentalsByCustomer.get(customerId);
+            if (customerRentals != null) {
+                result.addAll(customerRentals);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     // gets rentals for a specific car
     public List<Rental> getRentalsByCar(String carId) {
-        return rentals.stream()
-                .filter(rental -> rental.getCarId().equals(carId))
-                .collect(Collectors.toList());
+        lock.readLock().lock();
+        try {
+            List<Rental> result = archive.forCar(carId);
+            List<Rental> carRentals = rentalsByCar.get(carId);
+            if (carRentals != null) {
+                result.addAll(carRentals);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     // displays all the rentals
@@ -361,9 +715,10 @@ public class RentalService {
         System.out.println("-".repeat(85));
 
         // table data
+        LocalDate today = LocalDate.now();
         for (Rental rental : rentalList) {
             String status = rental.getStatus();
-            if (rental.isOverdue()) {
+            if (rental.isOverdue(today)) {
                 status += " (LATE)";
             }
 
@@ -383,7 +738,7 @@ public class RentalService {
 
         // summary statistics
         double totalRevenue = rentalList.stream()
-                .filter(r -> "COMPLETED".equals(r.getStatus()))
+                .filter(r -> r.getRentalStatus() == RentalStatus.COMPLETED)
                 .mapToDouble(Rental::getTotalCost)
                 .sum();
 
@@ -427,50 +782,145 @@ public class RentalService {
         return str.length() <= maxLength ? str : str.substring(0, maxLength - 3) + "...";
     }
 
-    // generates next available rental id
+    // generates next available rental id, every call hands out a new one
     public String generateNextRentalId() {
-        int maxId = 0;
-        for (Rental rental : rentals) {
-            try {
-                String idNum = rental.getRentalId().substring(1); // Remove 'R' prefix
-                int id = Integer.parseInt(idNum);
-                maxId = Math.max(maxId, id);
-            } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
-                // ignore invalid IDs
-            }
-        }
-        return "R" + String.format("%03d", maxId + 1);
+        return rentalIds.next();
+    }
+
+    public IdSequence getIdSequence() {
+        return rentalIds;
     }
 
     // gets rental statistics
     public Map<String, Object> getRentalStatistics() {
         Map<String, Object> stats = new HashMap<>();
 
-        stats.put("totalRentals", rentals.size());
-        stats.put("activeRentals", getActiveRentals().size());
-        stats.put("completedRentals", getCompletedRentals().size());
-        stats.put("overdueRentals", getOverdueRentals().size());
+        stats.put("totalRentals", getRentalCount());
+        stats.put("activeRentals", getActiveRentalCount());
+        stats.put("completedRentals", getCompletedRentalCount());
+        stats.put("overdueRentals", getOverdueCount());
+        stats.put("totalRevenue", getTotalRevenue());
+        stats.put("averageRentalCost", getAverageRentalCost());
+        stats.put("averageRentalDuration", getAverageRentalDuration());
 
-        // revenue statistics
-        double totalRevenue = getCompletedRentals().stream()
-                .mapToDouble(Rental::getTotalCost)
-                .sum();
-        stats.put("totalRevenue", totalRevenue);
+        return stats;
+    }
 
-        double averageRentalCost = getCompletedRentals().stream()
-                .mapToDouble(Rental::getTotalCost)
-                .average()
-                .orElse(0.0);
-        stats.put("averageRentalCost", averageRentalCost);
+    // revenue from all completed rentals, kept up to date as rentals complete
+    public double getTotalRevenue() {
+        lock.readLock().lock();
+        try {
+            return completedRevenue;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
 
-        // duration statistics
-        double averageDuration = getCompletedRentals().stream()
-                .mapToLong(Rental::getActualDuration)
-                .average()
-                .orElse(0.0);
-        stats.put("averageRentalDuration", averageDuration);
+    public double getAverageRentalCost() {
+        lock.readLock().lock();
+        try {
+            int completed = getCompletedRentalCount();
+            return completed > 0 ? completedRevenue / completed : 0.0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
 
-        return stats;
+    // average actual duration of the completed rentals in days
+    public double getAverageRentalDuration() {
+        lock.readLock().lock();
+        try {
+            int completed = getCompletedRentalCount();
+            return completed > 0 ? (double) completedDurationDays / completed : 0.0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // revenue and utilization buckets, filled as rentals complete
+    public RentalRollups getRollups() {
+        lock.readLock().lock();
+        try {
+            return rollups;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // recomputes the rollups from the whole rental history
+    public void rebuildRollups() {
+        lock.writeLock().lock();
+        try {
+            rollups = RentalRollups.rebuild(archive, rentals, carService::findCarById);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // displays revenue and utilization per day, week or month
+    public void displayRevenueReportInteractive() {
+        InputValidator.displaySection("Revenue & Utilization Report");
+
+        System.out.println("1. Daily");
+        System.out.println("2. Weekly");
+        System.out.println("3. Monthly");
+        RentalRollups.Granularity granularity =
+                RentalRollups.Granularity.values()[InputValidator.readIntInRange("Choose period (1-3): ", 1, 3) - 1];
+
+        LocalDate from = InputValidator.readDate("Enter report start date");
+        LocalDate to = InputValidator.readDateAfter("Enter report end date", from);
+
+        System.out.println("\n1. Whole fleet");
+        System.out.println("2. By car type");
+        System.out.println("3. By car make");
+        int grouping = InputValidator.readIntInRange("Choose grouping (1-3): ", 1, 3);
+
+        // read once under the lock, a rebuild replaces the whole object
+        RentalRollups rollups = getRollups();
+        switch (grouping) {
+            case 2:
+                Map<String, Long> carsByType = carService.getCarCountsByType();
+                rollups.reportByType(from, to, granularity).forEach((type, periods) ->
+                        displayRevenueReport(periods, "Type: " + type, carsByType.getOrDefault(type, 0L), from, to, granularity));
+                break;
+            case 3:
+                Map<String, Long> carsByMake = carService.getCarCountsByMake();
+                rollups.reportByMake(from, to, granularity).forEach((make, periods) ->
+                        displayRevenueReport(periods, "Make: " + make, carsByMake.getOrDefault(make, 0L), from, to, granularity));
+                break;
+            default:
+                displayRevenueReport(rollups.report(from, to, granularity), "Whole fleet", carService.getCarCount(),
+                        from, to, granularity);
+        }
+    }
+
+    private void displayRevenueReport(SortedMap<LocalDate, RentalRollups.Totals> periods, String title, long carCount,
+                                      LocalDate from, LocalDate to, RentalRollups.Granularity granularity) {
+        System.out.println("\n" + title + " (" + carCount + " car(s))");
+        if (periods.isEmpty()) {
+            System.out.println("No completed rentals in this period.");
+            return;
+        }
+
+        System.out.printf("%-12s %-8s %-14s %-10s %-11s%n", "Period", "Rentals", "Revenue", "Car-days", "Utilization");
+        System.out.println("-".repeat(60));
+
+        for (Map.Entry<LocalDate, RentalRollups.Totals> entry : periods.entrySet()) {
+            LocalDate periodStart = entry.getKey();
+            RentalRollups.Totals totals = entry.getValue();
+
+            // utilization compares rented car-days with the car-days the current fleet could offer
+            LocalDate first = periodStart.isBefore(from) ? from : periodStart;
+            LocalDate periodEnd = RentalRollups.periodEnd(periodStart, granularity);
+            LocalDate last = periodEnd.isAfter(to) ? to : periodEnd;
+            long capacity = carCount * (ChronoUnit.DAYS.between(first, last) + 1);
+            String utilization = capacity > 0
+                    ? String.format("%.1f%%", 100.0 * totals.getRentedCarDays() / capacity)
+                    : "-";
+
+            System.out.printf("%-12s %-8d $%-13.2f %-10d %-11s%n", periodStart, totals.getCompletedRentals(),
+                    totals.getRevenue(), totals.getRentedCarDays(), utilization);
+        }
     }
 
     // displays rental statistics
@@ -488,20 +938,75 @@ public class RentalService {
         System.out.printf("Average Rental Duration: %.1f days%n", (Double) stats.get("averageRentalDuration"));
     }
 
-    // synchronize data with our availability
+    // synchronize data with our availability, this also hands over cars whose reservation has started
     public void synchronizeData() {
-        int syncCount = 0;
+        LocalDate today = LocalDate.now();
+        handedOverThrough.accumulateAndGet(today.toEpochDay(), Math::max);
+        int syncCount = handOverCars(today);
+
+        if (syncCount > 0) {
+            System.out.println("Synchronized " + syncCount + " car(s) with rental data.");
+        }
+    }
+
+    // the first rental operation or availability query of a new day hands over the cars of the
+    // reservations starting that day, later calls on the same day only compare the date
+    void handOverStartedReservations() {
+        LocalDate today = LocalDate.now();
+        long last = handedOverThrough.get();
+        if (last < today.toEpochDay() && handedOverThrough.compareAndSet(last, today.toEpochDay())) {
+            handOverCars(today);
+        }
+    }
+
+    private int handOverCars(LocalDate today) {
+        int handedOverCount = 0;
+        for (Rental rental : withStatus(RentalStatus.ACTIVE)) {
+            if (rental.getStartDate().isAfter(today)) {
+                continue;
+            }
 
-        for (Rental rental : getActiveRentals()) {
+            // the hand-over happens under the car's stripe, so a return or cancellation either comes before it
+            // and is seen here, or comes after and returns the car again
             Car car = carService.findCarById(rental.getCarId());
-            if (car != null && car.isAvailable()) {
-                car.rent(rental.getCustomerId(), rental.getStartDate(), rental.getEndDate());
-                syncCount++;
+            if (car == null) {
+                continue;
+            }
+            boolean handedOver;
+            Lock carLock = carService.lockFor(rental.getCarId());
+            carLock.lock();
+            try {
+                handedOver = rental.isActive()
+                        && car.markRented(rental.getCustomerId(), rental.getStartDate(), rental.getEndDate());
+            } finally {
+                carLock.unlock();
+            }
+
+            if (handedOver) {
+                carService.updateAvailability(car);
+                handedOverCount++;
             }
         }
+        return handedOverCount;
+    }
 
-        if (syncCount > 0) {
-            System.out.println("Synchronized " + syncCount + " car(s) with rental data.");
+    // a car that comes back goes straight to a reservation of it that has already started,
+    // e.g. one that was waiting for an overdue return
+    private void handOverCar(Car car) {
+        LocalDate today = LocalDate.now();
+        boolean handedOver;
+        Lock carLock = carService.lockFor(car.getId());
+        carLock.lock();
+        try {
+            Rental next = calendar.findConflict(car.getId(), today, today.plusDays(1));
+            handedOver = next != null && next.isActive() && !next.getStartDate().isAfter(today)
+                    && car.markRented(next.getCustomerId(), next.getStartDate(), next.getEndDate());
+        } finally {
+            carLock.unlock();
+        }
+
+        if (handedOver) {
+            carService.updateAvailability(car);
         }
     }
 }
\ No newline at end of file
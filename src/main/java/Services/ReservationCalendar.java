@@ -0,0 +1,87 @@
+package Services;
+
+import Models.Rental;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// booked date ranges of the active rentals, both per car and for the whole fleet
+// a booking covers [startDate, endDate), so a car returned in the morning can be rented out again the same day
+// the bookings of a car are guarded by its stripe (CarService.lockFor), which callers hold around findConflict,
+// add and remove; the fleet tree is shared by all cars and locks itself
+class ReservationCalendar {
+
+    // per car the bookings never overlap, so the booking starting right before a range is the only one to check
+    private final Map<String, TreeMap<LocalDate, Rental>> bookingsByCar = new ConcurrentHashMap<>();
+    private final IntervalTree<Rental> fleet = new IntervalTree<>();
+    private final Map<Rental, Long> handles = new IdentityHashMap<>();
+
+    // car ids are matched ignoring case, the same way CarService looks them up
+    private static String carKey(String carId) {
+        return carId.toUpperCase(Locale.ROOT);
+    }
+
+    // the booking of the car that overlaps [start, end), or null if the car is free
+    Rental findConflict(String carId, LocalDate start, LocalDate end) {
+        TreeMap<LocalDate, Rental> bookings = bookingsByCar.get(carKey(carId));
+        if (bookings == null) {
+            return null;
+        }
+
+        Map.Entry<LocalDate, Rental> before = bookings.lowerEntry(end);
+        if (before != null && bookingEnd(before.getValue()).isAfter(start)) {
+            return before.getValue();
+        }
+        return null;
+    }
+
+    // returns false if the booking overlaps another one of the same car, it is still blocked for the fleet queries
+    boolean add(Rental rental) {
+        if (rental.getStartDate() == null) {
+            return true;
+        }
+        synchronized (fleet) {
+            if (handles.containsKey(rental)) {
+                return true;
+            }
+            handles.put(rental, fleet.insert(rental.getStartDate().toEpochDay(), bookingEnd(rental).toEpochDay(), rental));
+        }
+
+        if (findConflict(rental.getCarId(), rental.getStartDate(), bookingEnd(rental)) != null) {
+            return false;
+        }
+        bookingsByCar.computeIfAbsent(carKey(rental.getCarId()), k -> new TreeMap<>()).put(rental.getStartDate(), rental);
+        return true;
+    }
+
+    void remove(Rental rental) {
+        synchronized (fleet) {
+            Long handle = handles.remove(rental);
+            if (handle == null) {
+                return;
+            }
+            fleet.remove(rental.getStartDate().toEpochDay(), handle);
+        }
+
+        TreeMap<LocalDate, Rental> bookings = bookingsByCar.get(carKey(rental.getCarId()));
+        if (bookings != null && bookings.remove(rental.getStartDate(), rental) && bookings.isEmpty()) {
+            bookingsByCar.remove(carKey(rental.getCarId()));
+        }
+    }
+
+    // ids (upper case) of all cars with a booking overlapping [start, end)
+    Set<String> getBookedCarIds(LocalDate start, LocalDate end) {
+        Set<String> carIds = new HashSet<>();
+        synchronized (fleet) {
+            fleet.forEachOverlapping(start.toEpochDay(), end.toEpochDay(), rental -> carIds.add(carKey(rental.getCarId())));
+        }
+        return carIds;
+    }
+
+    // a booking always blocks at least its start day
+    private static LocalDate bookingEnd(Rental rental) {
+        LocalDate end = rental.getEndDate();
+        return end != null && end.isAfter(rental.getStartDate()) ? end : rental.getStartDate().plusDays(1);
+    }
+}
@@ -0,0 +1,32 @@
+package Services;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// a fixed set of locks, every key always maps to the same one
+// work on different keys only waits when two keys happen to share a stripe
+class StripedLock {
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    // the stripe count is rounded up to a power of two
+    StripedLock(int minStripes) {
+        int count = Integer.highestOneBit(Math.max(1, minStripes - 1)) << 1;
+        stripes = new ReentrantLock[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        mask = count - 1;
+    }
+
+    // keys are matched ignoring case, the same way ids are looked up
+    Lock forKey(String key) {
+        int hash = 0;
+        for (int i = 0; i < key.length(); i++) {
+            hash = 31 * hash + Character.toUpperCase(key.charAt(i));
+        }
+        hash ^= hash >>> 16;
+        return stripes[hash & mask];
+    }
+}
@@ -0,0 +1,136 @@
+package Services;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+// in-memory trigram index for substring search
+// every item gets a slot number, each trigram of its lowercased fields maps to the set of slots that contain it
+// trigrams are built from code points, so Cyrillic and other non-latin text is indexed like any other
+class TrigramIndex<T> {
+
+    private static final int GRAM_LENGTH = 3;
+
+    private final Function<T, String[]> fields;
+    private final Map<Long, BitSet> postings = new HashMap<>();
+    private final List<T> items = new ArrayList<>();
+    private final List<long[]> gramsBySlot = new ArrayList<>();
+    private final Map<T, Integer> slots = new IdentityHashMap<>();
+
+    TrigramIndex(Function<T, String[]> fields) {
+        this.fields = fields;
+    }
+
+    void add(T item) {
+        if (slots.containsKey(item)) {
+            return;
+        }
+
+        int slot = items.size();
+        items.add(item);
+        gramsBySlot.add(null);
+        slots.put(item, slot);
+        indexSlot(item, slot);
+    }
+
+    private void indexSlot(T item, int slot) {
+        Set<Long> grams = new HashSet<>();
+        for (String field : fields.apply(item)) {
+            if (field != null) {
+                addGrams(normalize(field), grams);
+            }
+        }
+
+        long[] itemGrams = new long[grams.size()];
+        int i = 0;
+        for (long gram : grams) {
+            postings.computeIfAbsent(gram, k -> new BitSet()).set(slot);
+            itemGrams[i++] = gram;
+        }
+        gramsBySlot.set(slot, itemGrams);
+    }
+
+    private void unindexSlot(int slot) {
+        for (long gram : gramsBySlot.get(slot)) {
+            BitSet posting = postings.get(gram);
+            posting.clear(slot);
+            if (posting.isEmpty()) {
+                postings.remove(gram);
+            }
+        }
+        gramsBySlot.set(slot, null);
+    }
+
+    // the slot is left empty, slots are never reused so search results keep insertion order
+    void remove(T item) {
+        Integer slot = slots.remove(item);
+        if (slot == null) {
+            return;
+        }
+
+        unindexSlot(slot);
+        items.set(slot, null);
+    }
+
+    // call after the indexed fields of an item have changed, the item keeps its slot and position
+    void update(T item) {
+        Integer slot = slots.get(item);
+        if (slot == null) {
+            add(item);
+            return;
+        }
+
+        unindexSlot(slot);
+        indexSlot(item, slot);
+    }
+
+    // returns the items containing the term in one of their fields, or null if the term is too short for the index
+    // candidates are checked with the given matcher because the trigrams may come from different fields
+    List<T> search(String term, Predicate<T> matcher) {
+        Set<Long> grams = new HashSet<>();
+        addGrams(normalize(term), grams);
+        if (grams.isEmpty()) {
+            return null;
+        }
+
+        // intersects starting from the rarest trigram
+        List<BitSet> lists = new ArrayList<>();
+        for (long gram : grams) {
+            BitSet posting = postings.get(gram);
+            if (posting == null) {
+                return new ArrayList<>();
+            }
+            lists.add(posting);
+        }
+        lists.sort(Comparator.comparingInt(BitSet::cardinality));
+
+        // copied with or(), not clone(), see CarFacetIndex.copy
+        BitSet candidates = new BitSet();
+        candidates.or(lists.get(0));
+        for (int i = 1; i < lists.size() && !candidates.isEmpty(); i++) {
+            candidates.and(lists.get(i));
+        }
+
+        List<T> results = new ArrayList<>();
+        for (int slot = candidates.nextSetBit(0); slot >= 0; slot = candidates.nextSetBit(slot + 1)) {
+            T item = items.get(slot);
+            if (matcher.test(item)) {
+                results.add(item);
+            }
+        }
+        return results;
+    }
+
+    // same normalization as matchesSearchTerm, so every match is guaranteed to share all trigrams
+    private static String normalize(String text) {
+        return text.toLowerCase();
+    }
+
+    private static void addGrams(String text, Set<Long> grams) {
+        int[] codePoints = text.codePoints().toArray();
+        for (int i = 0; i + GRAM_LENGTH <= codePoints.length; i++) {
+            // a code point fits in 21 bits, so three of them pack into one long
+            grams.add(((long) codePoints[i] << 42) | ((long) codePoints[i + 1] << 21) | codePoints[i + 2]);
+        }
+    }
+}
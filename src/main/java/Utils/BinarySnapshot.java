@@ -0,0 +1,253 @@
+package Utils;
+
+import Models.Car;
+import Models.Customer;
+import Models.Rental;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.*;
+
+// compact binary copy of the CSV data, used for fast restarts
+// layout: header (magic, version), string dictionary, cars, customers, rentals
+// dates are stored as epoch days, money as cents and every string as a dictionary index
+public class BinarySnapshot {
+
+    private static final int MAGIC = 0x43525342; // "CRSB"
+    private static final int CURRENT_VERSION = 1;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    private static final int NO_STRING = -1;
+
+    private final Path path;
+
+    public BinarySnapshot(Path path) {
+        this.path = path;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    // writes all the data in the current format
+    public void write(List<Car> cars, List<Customer> customers, List<Rental> rentals) throws IOException {
+        Dictionary dictionary = new Dictionary();
+        for (Car car : cars) {
+            dictionary.add(car.getId(), car.getMake(), car.getModel(), car.getType());
+        }
+        for (Customer customer : customers) {
+            dictionary.add(customer.getCustomerId(), customer.getName(), customer.getEmail(),
+                    customer.getPhone(), customer.getLicenseNumber());
+        }
+        for (Rental rental : rentals) {
+            dictionary.add(rental.getRentalId(), rental.getCustomerId(), rental.getCarId(),
+                    rental.getStatus(), rental.getNotes());
+        }
+
+        long size = 8L + dictionary.byteSize()
+                + 4 + cars.size() * 21L
+                + 4 + customers.size() * 24L
+                + 4 + rentals.size() * 48L;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot too large: " + size + " bytes");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        buffer.putInt(MAGIC);
+        buffer.putInt(CURRENT_VERSION);
+        dictionary.writeTo(buffer);
+
+        buffer.putInt(cars.size());
+        for (Car car : cars) {
+            buffer.putInt(dictionary.indexOf(car.getId()));
+            buffer.putInt(dictionary.indexOf(car.getMake()));
+            buffer.putInt(dictionary.indexOf(car.getModel()));
+            buffer.putInt(car.getYear());
+            buffer.putInt(dictionary.indexOf(car.getType()));
+            buffer.put((byte) (car.isAvailable() ? 1 : 0));
+        }
+
+        buffer.putInt(customers.size());
+        for (Customer customer : customers) {
+            buffer.putInt(dictionary.indexOf(customer.getCustomerId()));
+            buffer.putInt(dictionary.indexOf(customer.getName()));
+            buffer.putInt(dictionary.indexOf(customer.getEmail()));
+            buffer.putInt(dictionary.indexOf(customer.getPhone()));
+            buffer.putInt(dictionary.indexOf(customer.getLicenseNumber()));
+            buffer.putInt(toEpochDay(customer.getRegistrationDate()));
+        }
+
+        buffer.putInt(rentals.size());
+        for (Rental rental : rentals) {
+            buffer.putInt(dictionary.indexOf(rental.getRentalId()));
+            buffer.putInt(dictionary.indexOf(rental.getCustomerId()));
+            buffer.putInt(dictionary.indexOf(rental.getCarId()));
+            buffer.putInt(toEpochDay(rental.getStartDate()));
+            buffer.putInt(toEpochDay(rental.getEndDate()));
+            buffer.putInt(toEpochDay(rental.getActualReturnDate()));
+            buffer.putLong(toCents(rental.getDailyRate()));
+            buffer.putLong(toCents(rental.getTotalCost()));
+            buffer.putInt(dictionary.indexOf(rental.getStatus()));
+            buffer.putInt(dictionary.indexOf(rental.getNotes()));
+        }
+
+        buffer.flip();
+        FileHandler.replaceAtomically(path, buffer);
+    }
+
+    // reads the whole snapshot with one bulk read and decodes it
+    public FileHandler.DataContainer read() throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot too large: " + size + " bytes");
+            }
+            buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) break;
+            }
+            buffer.flip();
+        }
+
+        try {
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+                throw new IOException("Not a car rental snapshot: " + path);
+            }
+
+            int version = buffer.getInt();
+            switch (version) {
+                case 1:
+                    return readVersion1(buffer);
+                // older layouts get their own reader here; the next write stores them in CURRENT_VERSION
+                default:
+                    throw new IOException("Unsupported snapshot version " + version);
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+                 | NegativeArraySizeException | DateTimeException e) {
+            throw new IOException("Corrupt snapshot " + path + ": " + e, e);
+        }
+    }
+
+    private FileHandler.DataContainer readVersion1(ByteBuffer buffer) {
+        String[] strings = Dictionary.readFrom(buffer);
+
+        int carCount = buffer.getInt();
+        List<Car> cars = new ArrayList<>(carCount);
+        for (int i = 0; i < carCount; i++) {
+            Car car = new Car(
+                    string(strings, buffer.getInt()), // id
+                    string(strings, buffer.getInt()), // make
+                    string(strings, buffer.getInt()), // model
+                    buffer.getInt(), // year
+                    string(strings, buffer.getInt()) // type
+            );
+            car.setAvailable(buffer.get() != 0);
+            cars.add(car);
+        }
+
+        int customerCount = buffer.getInt();
+        List<Customer> customers = new ArrayList<>(customerCount);
+        for (int i = 0; i < customerCount; i++) {
+            customers.add(new Customer(
+                    string(strings, buffer.getInt()), // customerId
+                    string(strings, buffer.getInt()), // name
+                    string(strings, buffer.getInt()), // email
+                    string(strings, buffer.getInt()), // phone
+                    string(strings, buffer.getInt()), // licenseNumber
+                    fromEpochDay(buffer.getInt()) // registrationDate
+            ));
+        }
+
+        int rentalCount = buffer.getInt();
+        List<Rental> rentals = new ArrayList<>(rentalCount);
+        for (int i = 0; i < rentalCount; i++) {
+            rentals.add(new Rental(
+                    string(strings, buffer.getInt()), // rentalId
+                    string(strings, buffer.getInt()), // customerId
+                    string(strings, buffer.getInt()), // carId
+                    fromEpochDay(buffer.getInt()), // startDate
+                    fromEpochDay(buffer.getInt()), // endDate
+                    fromEpochDay(buffer.getInt()), // actualReturnDate
+                    fromCents(buffer.getLong()), // dailyRate
+                    fromCents(buffer.getLong()), // totalCost
+                    string(strings, buffer.getInt()), // status
+                    string(strings, buffer.getInt()) // notes
+            ));
+        }
+
+        return new FileHandler.DataContainer(cars, customers, rentals);
+    }
+
+    private static String string(String[] strings, int index) {
+        return index == NO_STRING ? null : strings[index];
+    }
+
+    private static int toEpochDay(LocalDate date) {
+        return date != null ? Math.toIntExact(date.toEpochDay()) : NO_DATE;
+    }
+
+    private static LocalDate fromEpochDay(int epochDay) {
+        return epochDay != NO_DATE ? LocalDate.ofEpochDay(epochDay) : null;
+    }
+
+    // amounts are kept with cent precision, the same as the CSV file
+    private static long toCents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    private static double fromCents(long cents) {
+        return cents / 100.0;
+    }
+
+    // every distinct string is stored once and referenced by its index
+    private static class Dictionary {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<byte[]> encoded = new ArrayList<>();
+        private long byteSize = 4;
+
+        void add(String... values) {
+            for (String value : values) {
+                if (value != null && !indexes.containsKey(value)) {
+                    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    indexes.put(value, encoded.size());
+                    encoded.add(bytes);
+                    byteSize += 4 + bytes.length;
+                }
+            }
+        }
+
+        int indexOf(String value) {
+            return value != null ? indexes.get(value) : NO_STRING;
+        }
+
+        long byteSize() {
+            return byteSize;
+        }
+
+        void writeTo(ByteBuffer buffer) {
+            buffer.putInt(encoded.size());
+            for (byte[] bytes : encoded) {
+                buffer.putInt(bytes.length);
+                buffer.put(bytes);
+            }
+        }
+
+        static String[] readFrom(ByteBuffer buffer) {
+            String[] strings = new String[buffer.getInt()];
+            byte[] array = buffer.array();
+            for (int i = 0; i < strings.length; i++) {
+                int length = buffer.getInt();
+                strings[i] = new String(array, buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + length);
+            }
+            return strings;
+        }
+    }
+}
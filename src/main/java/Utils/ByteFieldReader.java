@@ -0,0 +1,180 @@
+package Utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+// tokenizes CSV lines straight out of a (memory-mapped) byte buffer
+// fields are only turned into objects when they are asked for
+class ByteFieldReader {
+
+    private final ByteBuffer buffer;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int fieldCount;
+    private byte[] scratch = new byte[256];
+
+    ByteFieldReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    // finds the field boundaries of one line, returns false for blank and comment lines
+    boolean readLine(int lineStart, int lineEnd) {
+        // trims the line the same way String.trim does
+        while (lineStart < lineEnd && (buffer.get(lineStart) & 0xFF) <= ' ') lineStart++;
+        while (lineEnd > lineStart && (buffer.get(lineEnd - 1) & 0xFF) <= ' ') lineEnd--;
+
+        if (lineStart == lineEnd || buffer.get(lineStart) == '#') {
+            return false;
+        }
+
+        fieldCount = 0;
+        int fieldStart = lineStart;
+        for (int i = lineStart; i < lineEnd; i++) {
+            if (buffer.get(i) == ',') {
+                addField(fieldStart, i);
+                fieldStart = i + 1;
+            }
+        }
+        addField(fieldStart, lineEnd);
+        return true;
+    }
+
+    private void addField(int start, int end) {
+        if (fieldCount == starts.length) {
+            starts = Arrays.copyOf(starts, fieldCount * 2);
+            ends = Arrays.copyOf(ends, fieldCount * 2);
+        }
+        starts[fieldCount] = start;
+        ends[fieldCount] = end;
+        fieldCount++;
+    }
+
+    int fieldCount() {
+        return fieldCount;
+    }
+
+    boolean isEmpty(int field) {
+        return starts[field] == ends[field];
+    }
+
+    // compares a field with an ASCII constant without decoding it
+    boolean equalsAscii(int field, String value, boolean ignoreCase) {
+        int start = starts[field];
+        if (ends[field] - start != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            int b = buffer.get(start + i);
+            int c = value.charAt(i);
+            if (b != c && !(ignoreCase && Character.toUpperCase(b) == Character.toUpperCase(c))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // decodes a field as UTF-8
+    String string(int field) {
+        return decode(starts[field], ends[field]);
+    }
+
+    // decodes a field as UTF-8 without surrounding whitespace
+    String trimmedString(int field) {
+        int start = starts[field];
+        int end = ends[field];
+        while (start < end && (buffer.get(start) & 0xFF) <= ' ') start++;
+        while (end > start && (buffer.get(end - 1) & 0xFF) <= ' ') end--;
+        return decode(start, end);
+    }
+
+    // parses a plain integer field, surrounding whitespace is ignored
+    int integer(int field) {
+        int start = starts[field];
+        int end = ends[field];
+        while (start < end && (buffer.get(start) & 0xFF) <= ' ') start++;
+        while (end > start && (buffer.get(end - 1) & 0xFF) <= ' ') end--;
+
+        int digits = end - start;
+        if (digits == 0 || digits > 9) {
+            return Integer.parseInt(decode(start, end));
+        }
+
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return Integer.parseInt(decode(start, end));
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    // parses a decimal such as 275.00, the result is identical to Double.parseDouble
+    double decimal(int field) {
+        int start = starts[field];
+        int end = ends[field];
+        boolean negative = end > start && buffer.get(start) == '-';
+        int i = negative ? start + 1 : start;
+
+        long unscaled = 0;
+        long scale = 1;
+        int digits = 0;
+        boolean fraction = false;
+        for (; i < end; i++) {
+            int b = buffer.get(i);
+            if (b == '.' && !fraction) {
+                fraction = true;
+                continue;
+            }
+            int digit = b - '0';
+            if (digit < 0 || digit > 9 || ++digits > 15) {
+                return Double.parseDouble(decode(start, end));
+            }
+            unscaled = unscaled * 10 + digit;
+            if (fraction) scale *= 10;
+        }
+        if (digits == 0) {
+            return Double.parseDouble(decode(start, end));
+        }
+
+        // both operands are exact, so the division rounds exactly like the decimal parser
+        double value = (double) unscaled / scale;
+        return negative ? -value : value;
+    }
+
+    // parses an ISO date (yyyy-MM-dd) without creating a String for it
+    LocalDate date(int field) {
+        int start = starts[field];
+        if (ends[field] - start == 10 && buffer.get(start + 4) == '-' && buffer.get(start + 7) == '-') {
+            int year = digits(start, 4);
+            int month = digits(start + 5, 2);
+            int day = digits(start + 8, 2);
+            if (year >= 0 && month >= 0 && day >= 0) {
+                return LocalDate.of(year, month, day);
+            }
+        }
+        return LocalDate.parse(string(field));
+    }
+
+    private int digits(int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) return -1;
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private String decode(int start, int end) {
+        int length = end - start;
+        if (length > scratch.length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        buffer.get(start, scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+}
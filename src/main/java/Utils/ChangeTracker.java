@@ -0,0 +1,194 @@
+package Utils;
+
+import interfaces.MutationListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+// remembers which entities changed since the last flush
+// only the latest change of every entity is kept, so a flush writes each one once
+public class ChangeTracker implements MutationListener {
+
+    // shared by all trackers, so changes drained from several services have one consistent position
+    // recording a change takes the shared side, so changes of different entities never wait for each other;
+    // draining takes the exclusive side, so no change holds a position without being in its tracker yet
+    private static final ReentrantReadWriteLock LOCK = new ReentrantReadWriteLock();
+    private static final AtomicLong position = new AtomicLong();
+
+    private final Map<String, Change> pending = new ConcurrentHashMap<>();
+    private volatile boolean tracking = true;
+
+    @Override
+    public void onMutation(Type type, String id, String record) {
+        onMutation(type, id, () -> record);
+    }
+
+    // the record is built inside the map update, after the change: of two threads changing the same entity,
+    // the one that records last also reads the latest state and gets the later position,
+    // so an older record cannot replace a newer one
+    public void onMutation(Type type, String id, Supplier<String> record) {
+        LOCK.readLock().lock();
+        try {
+            if (!tracking) {
+                return;
+            }
+            pending.compute(key(type, id), (key, previous) ->
+                    new Change(type, id, record != null ? record.get() : null, position.incrementAndGet()));
+        } finally {
+            LOCK.readLock().unlock();
+        }
+    }
+
+    // for runs that never save: forgets what is pending and ignores every later change,
+    // otherwise nothing would ever drain the tracker and it would grow with every change
+    public void stopTracking() {
+        LOCK.writeLock().lock();
+        try {
+            tracking = false;
+            pending.clear();
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+    }
+
+    // position of the latest change recorded by any tracker
+    public static long currentPosition() {
+        return position.get();
+    }
+
+    // the position up to which no change of the trackers is pending, e.g. where a new saver starts as durable
+    public static long positionBeforePending(ChangeTracker... trackers) {
+        LOCK.writeLock().lock();
+        try {
+            long oldest = position.get() + 1;
+            for (ChangeTracker tracker : trackers) {
+                for (Change change : tracker.pending.values()) {
+                    oldest = Math.min(oldest, change.getPosition());
+                }
+            }
+            return oldest - 1;
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+    }
+
+    // hands out the pending changes in the order they were made and starts tracking from scratch,
+    // the caller then has to persist them
+    public List<Change> drain() {
+        LOCK.writeLock().lock();
+        try {
+            List<Change> changes = new ArrayList<>(pending.values());
+            pending.clear();
+            changes.sort(Comparator.comparingLong(Change::getPosition));
+            return changes;
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+    }
+
+    // drains several trackers at once; every change up to the returned position is in the batch
+    public static Batch drainAll(ChangeTracker... trackers) {
+        LOCK.writeLock().lock();
+        try {
+            List<List<Change>> changes = new ArrayList<>();
+            for (ChangeTracker tracker : trackers) {
+                changes.add(tracker.drain());
+            }
+            return new Batch(position.get(), changes);
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+    }
+
+    // puts back changes that could not be written, unless the entity changed again meanwhile
+    public void requeue(List<Change> changes) {
+        LOCK.writeLock().lock();
+        try {
+            for (Change change : changes) {
+                pending.putIfAbsent(key(change.getType(), change.getId()), change);
+            }
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    // CAR_ADDED and CAR_REMOVED of the same car share a key, so the later one replaces the earlier
+    private static String key(Type type, String id) {
+        String name = type.name();
+        return name.substring(0, name.indexOf('_')) + ":" + id;
+    }
+
+    // one entity change, written to the journal as "TYPE,<CSV record>" or "TYPE,<id>"
+    public static class Change {
+        private final Type type;
+        private final String id;
+        private final String record;
+        private final long position;
+
+        public Change(Type type, String id, String record, long position) {
+            this.type = type;
+            this.id = id;
+            this.record = record;
+            this.position = position;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getRecord() {
+            return record;
+        }
+
+        public long getPosition() {
+            return position;
+        }
+
+        public String toJournalLine() {
+            return type.name() + "," + (record != null ? record : id);
+        }
+    }
+
+    // changes drained from several trackers, in the order the trackers were given
+    public static class Batch {
+        private final long position;
+        private final List<List<Change>> changes;
+
+        Batch(long position, List<List<Change>> changes) {
+            this.position = position;
+            this.changes = changes;
+        }
+
+        public long getPosition() {
+            return position;
+        }
+
+        public List<Change> getChanges(int tracker) {
+            return changes.get(tracker);
+        }
+
+        public List<Change> getAllChanges() {
+            List<Change> all = new ArrayList<>();
+            changes.forEach(all::addAll);
+            return all;
+        }
+
+        public int size() {
+            return changes.stream().mapToInt(List::size).sum();
+        }
+    }
+}
@@ -3,48 +3,114 @@ package Utils;
 import Models.Car;
 import Models.Customer;
 import Models.Rental;
+import Models.RentalStatus;
+import interfaces.MutationListener;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 public class FileHandler {
 
     private static final String DATA_DIRECTORY = "data";
     private static final String CSV_FILE_NAME = "rentals.csv";
     private static final String BACKUP_SUFFIX = ".backup";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int MAX_BACKUP_GENERATIONS = 5;
+    private static final DateTimeFormatter BACKUP_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String JOURNAL_FILE_NAME = "rentals.journal";
+    private static final String BINARY_SNAPSHOT_FILE_NAME = "rentals.snapshot";
+    private static final String SEQUENCES_FILE_NAME = "rentals.sequences";
+    private static final long SNAPSHOT_INTERVAL = 5000; // journal entries between full snapshots
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final long PARALLEL_THRESHOLD = 8L * 1024 * 1024; // smaller files are streamed
+    private static final long MIN_CHUNK_SIZE = 1024 * 1024;
+    private static final long MAX_CHUNK_SIZE = 16L * 1024 * 1024;
     private final String filePath;
     private final String backupPath;
+    private final Journal journal;
+    private final BinarySnapshot binarySnapshot;
+    private final Path sequencesPath;
+    private final String dataDirectory;
+    private ReadMode readMode = ReadMode.STANDARD;
+
+    // how readAllData gets the bytes of the CSV file
+    public enum ReadMode {
+        STANDARD, // streamed, or read in parallel chunks for large files
+        MAPPED    // memory-mapped, fields are decoded straight from the mapped pages (mapping freed only by GC)
+    }
 
 
     public FileHandler() {
-        this.filePath = DATA_DIRECTORY + File.separator + CSV_FILE_NAME;
+        this(DATA_DIRECTORY);
+    }
+
+    // keeps the data files in another directory, e.g. a scratch directory for benchmarks
+    public FileHandler(String dataDirectory) {
+        this.dataDirectory = dataDirectory;
+        this.filePath = dataDirectory + File.separator + CSV_FILE_NAME;
         this.backupPath = filePath + BACKUP_SUFFIX;
+        this.journal = new Journal(dataDirectory + File.separator + JOURNAL_FILE_NAME);
+        this.binarySnapshot = new BinarySnapshot(Paths.get(dataDirectory, BINARY_SNAPSHOT_FILE_NAME));
+        this.sequencesPath = Paths.get(dataDirectory, SEQUENCES_FILE_NAME);
         ensureDataDirectoryExists();
     }
 
     // if data directory does not exist, it creates one
     private void ensureDataDirectoryExists() {
         try {
-            Path dataDir = Paths.get(DATA_DIRECTORY);
+            Path dataDir = Paths.get(dataDirectory);
             if (!Files.exists(dataDir)) {
                 Files.createDirectories(dataDir);
-                System.out.println("Created data directory: " + DATA_DIRECTORY);
+                System.out.println("Created data directory: " + dataDirectory);
             }
         } catch (IOException e) {
             System.err.println("Error creating data directory: " + e.getMessage());
         }
     }
 
+    public ReadMode getReadMode() {
+        return readMode;
+    }
+
+    public void setReadMode(ReadMode readMode) {
+        this.readMode = readMode;
+    }
+
     // creates a backup of current CSV file before making any changes
+    // older backups move one generation down, the oldest one is dropped
     public boolean createBackup() {
         try {
             Path originalFile = Paths.get(filePath);
             if (Files.exists(originalFile)) {
-                Path backupFile = Paths.get(backupPath);
-                Files.copy(originalFile, backupFile, StandardCopyOption.REPLACE_EXISTING);
+                Files.deleteIfExists(backupFile(MAX_BACKUP_GENERATIONS));
+                for (int generation = MAX_BACKUP_GENERATIONS - 1; generation >= 1; generation--) {
+                    Path backupFile = backupFile(generation);
+                    if (Files.exists(backupFile)) {
+                        Files.move(backupFile, backupFile(generation + 1), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+
+                // the data file is only ever replaced, never rewritten in place,
+                // so a hard link keeps the current contents without copying them
+                Path backupFile = backupFile(1);
+                try {
+                    Files.createLink(backupFile, originalFile);
+                } catch (IOException | UnsupportedOperationException e) {
+                    copyFile(originalFile, backupFile);
+                }
                 System.out.println("Backup created successfully");
                 return true;
             }
@@ -55,15 +121,27 @@ public class FileHandler {
         }
     }
 
-    // restore data  from the backup  file
+    // restore data from the latest backup file
     public boolean restoreFromBackup() {
+        return restoreFromBackup(1);
+    }
+
+    // restore data from a backup generation (1 is the latest)
+    public boolean restoreFromBackup(int generation) {
         try {
-            Path backupFile = Paths.get(backupPath);
+            Path backupFile = backupFile(generation);
             Path originalFile = Paths.get(filePath);
 
             if (Files.exists(backupFile)) {
-                Files.copy(backupFile, originalFile, StandardCopyOption.REPLACE_EXISTING);
-                System.out.println("Data restored from backup successfully");
+                // copied rather than linked, so the restored file is newer than any binary snapshot
+                Path tempFile = Paths.get(filePath + TEMP_SUFFIX);
+                copyFile(backupFile, tempFile);
+                moveIntoPlace(tempFile, originalFile);
+
+                // neither the binary snapshot nor the changes journaled after the backup belong to it
+                Files.deleteIfExists(binarySnapshot.getPath());
+                journal.clear();
+                System.out.println("Data restored from backup generation " + generation + " successfully");
                 return true;
             } else {
                 System.err.println("No backup file found");
@@ -75,106 +153,515 @@ public class FileHandler {
         }
     }
 
-    // reads all the data from the CSV file
+    // number of backup generations currently on disk
+    public int getBackupGenerationCount() {
+        int count = 0;
+        while (count < MAX_BACKUP_GENERATIONS && Files.exists(backupFile(count + 1))) {
+            count++;
+        }
+        return count;
+    }
+
+    // short description of a backup generation for menus
+    public String describeBackup(int generation) {
+        try {
+            Path backupFile = backupFile(generation);
+            LocalDateTime saved = LocalDateTime.ofInstant(
+                    Files.getLastModifiedTime(backupFile).toInstant(), ZoneId.systemDefault());
+            return generation + ". " + backupFile.getFileName() + " - saved " +
+                    saved.format(BACKUP_TIME_FORMAT) + " (" + Files.size(backupFile) + " bytes)";
+        } catch (IOException e) {
+            return generation + ". unavailable (" + e.getMessage() + ")";
+        }
+    }
+
+    // generation 1 keeps the original backup file name
+    private Path backupFile(int generation) {
+        return Paths.get(generation == 1 ? backupPath : backupPath + "." + generation);
+    }
+
+    // copies a file through the channels, letting the OS move the bytes
+    private static void copyFile(Path source, Path target) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+            out.force(true);
+        }
+    }
+
+    // writes the content to a temp file, forces it to disk and renames it over the target,
+    // so after a crash the target holds either the old or the new contents, never a mix
+    static void replaceAtomically(Path target, ByteBuffer content) throws IOException {
+        Path tempFile = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+            channel.force(true);
+        }
+        moveIntoPlace(tempFile, target);
+    }
+
+    private static void moveIntoPlace(Path tempFile, Path target) throws IOException {
+        try {
+            Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        // makes the rename itself durable where the platform allows syncing a directory
+        Path directory = target.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // not supported on every platform (e.g. Windows)
+        }
+    }
+
+    // reads all the data from the CSV file, large files are parsed on all cores
     public DataContainer readAllData() {
-        List<Car> cars = new ArrayList<>();
-        List<Customer> customers = new ArrayList<>();
-        List<Rental> rentals = new ArrayList<>();
+        return readAllData(Runtime.getRuntime().availableProcessors());
+    }
+
+    // reads all the data from the CSV file using up to the given number of parser threads,
+    // then replays the journal on top of it
+    public DataContainer readAllData(int parallelism) {
+        DataContainer data = readSnapshot(parallelism);
+        replayJournal(data);
+        deduplicateStrings(data);
+        return data;
+    }
+
+    // every parsed field is a fresh String, so the same car id, make or note exists once per line
+    // swaps them for one shared instance; ids of cars and customers go in first so rentals point at those
+    // what it saved is kept on the container, so callers can report it
+    private void deduplicateStrings(DataContainer data) {
+        StringPool pool = new StringPool();
+
+        for (Car car : data.getCars()) {
+            car.setId(pool.intern(car.getId()));
+        }
+        for (Customer customer : data.getCustomers()) {
+            customer.setCustomerId(pool.intern(customer.getCustomerId()));
+        }
+        for (Car car : data.getCars()) {
+            car.setMake(pool.intern(car.getMake()));
+            car.setModel(pool.intern(car.getModel()));
+        }
+        for (Customer customer : data.getCustomers()) {
+            customer.setName(pool.intern(customer.getName()));
+        }
+        for (Rental rental : data.getRentals()) {
+            rental.setCustomerId(pool.intern(rental.getCustomerId()));
+            rental.setCarId(pool.intern(rental.getCarId()));
+            rental.setNotes(pool.intern(rental.getNotes()));
+        }
+
+        data.deduplicatedStrings = pool.getDuplicates();
+        data.deduplicationSavedBytes = pool.getSavedBytes();
+    }
+
+    private DataContainer readSnapshot(int parallelism) {
+        Path file = Paths.get(filePath);
+
+        // the binary snapshot is only trusted while the CSV has not been changed after it
+        if (isBinarySnapshotCurrent(file)) {
+            try {
+                DataContainer data = binarySnapshot.read();
+                System.out.println("Loaded binary snapshot: " + data.getCars().size() + " cars, " +
+                        data.getCustomers().size() + " customers, " +
+                        data.getRentals().size() + " rentals");
+                return data;
+            } catch (IOException e) {
+                System.err.println("Error reading binary snapshot (" + e.getMessage() + "), using the CSV file.");
+            }
+        }
+
+        if (!Files.exists(file)) {
+            System.out.println("CSV file not found. Starting with empty data.");
+            return new DataContainer(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        }
+
+        if (readMode == ReadMode.MAPPED) {
+            try {
+                return readAllDataInChunks(file, parallelism, true);
+            } catch (IOException | UnsupportedOperationException e) {
+                // e.g. file systems that cannot map files, the regular read path still works there
+                System.err.println("Memory mapping not available (" + e.getMessage() + "), using regular reads.");
+            }
+        }
 
         try {
-            Path file = Paths.get(filePath);
-            if (!Files.exists(file)) {
-                System.out.println("CSV file not found. Starting with empty data.");
-                return new DataContainer(cars, customers, rentals);
+            if (parallelism > 1 && Files.size(file) >= PARALLEL_THRESHOLD) {
+                return readAllDataInChunks(file, parallelism, false);
             }
+        } catch (IOException e) {
+            System.err.println("Error reading CSV file: " + e.getMessage());
+            return new DataContainer(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        }
+        return readAllDataStreaming(file);
+    }
+
+    private boolean isBinarySnapshotCurrent(Path csvFile) {
+        try {
+            Path binaryFile = binarySnapshot.getPath();
+            return Files.exists(binaryFile) && (!Files.exists(csvFile) ||
+                    Files.getLastModifiedTime(binaryFile).compareTo(Files.getLastModifiedTime(csvFile)) >= 0);
+        } catch (IOException e) {
+            return false;
+        }
+    }
 
-            List<String> lines = Files.readAllLines(file);
-            System.out.println("Reading " + lines.size() + " lines from CSV file");
+    // applies the changes journaled since the last snapshot, later entries win
+    private void replayJournal(DataContainer data) {
+        Path path = journal.getPath();
+        if (!Files.exists(path)) {
+            journal.setEntryCount(0);
+            return;
+        }
 
-            for (int i = 0; i < lines.size(); i++) {
-                String line = lines.get(i).trim();
-                if (line.isEmpty()) continue;
+        Map<String, Car> cars = new LinkedHashMap<>();
+        data.getCars().forEach(car -> cars.putIfAbsent(car.getId(), car));
+        Map<String, Customer> customers = new LinkedHashMap<>();
+        data.getCustomers().forEach(customer -> customers.putIfAbsent(customer.getCustomerId(), customer));
+        Map<String, Rental> rentals = new LinkedHashMap<>();
+        data.getRentals().forEach(rental -> rentals.putIfAbsent(rental.getRentalId(), rental));
+
+        long entries = 0;
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                entries++;
+
+                // a torn last entry after a crash only fails to parse and is skipped
+                int comma = line.indexOf(',');
+                MutationListener.Type type = comma > 0 ? parseJournalType(line.substring(0, comma)) : null;
+                if (type == null) {
+                    System.err.println("Invalid journal entry " + entries + ": " + line);
+                    continue;
+                }
 
-                try {
-                    String[] parts = line.split(",");
-                    if (parts.length < 2) continue;
-
-                    String recordType = parts[0].trim();
-
-                    switch (recordType.toUpperCase()) {
-                        case "CAR":
-                            Car car = parseCarFromCSV(line);
-                            if (car != null) {
-                                cars.add(car);
-                            }
-                            break;
-
-                        case "CUSTOMER":
-                            Customer customer = Customer.fromCSV(line);
-                            if (customer != null) {
-                                customers.add(customer);
-                            }
-                            break;
-
-                        case "RENTAL":
-                            Rental rental = Rental.fromCSV(line);
-                            if (rental != null) {
-                                rentals.add(rental);
-                            }
-                            break;
-
-                        default:
-                            System.err.println("Unknown record " + (i + 1) + ": " + recordType);
-                    }
-                } catch (Exception e) {
-                    System.err.println("Error parsing line " + (i + 1) + ": " + e.getMessage());
+                String payload = line.substring(comma + 1);
+                switch (type) {
+                    case CAR_REMOVED:
+                        cars.remove(payload);
+                        break;
+                    case CUSTOMER_REMOVED:
+                        customers.remove(payload);
+                        break;
+                    default:
+                        ParseResult change = new ParseResult();
+                        parseRecord(payload, entries, change);
+                        change.cars.forEach(car -> cars.put(car.getId(), car));
+                        change.customers.forEach(customer -> customers.put(customer.getCustomerId(), customer));
+                        change.rentals.forEach(rental -> rentals.put(rental.getRentalId(), rental));
+                        for (ParseError error : change.errors) {
+                            System.err.println("Invalid journal entry " + error.lineNumber + ": " + error.detail);
+                        }
                 }
             }
+        } catch (IOException e) {
+            System.err.println("Error reading journal: " + e.getMessage());
+        }
 
-            System.out.println("Loaded: " + cars.size() + " cars, " +
-                    customers.size() + " customers, " +
-                    rentals.size() + " rentals");
+        data.getCars().clear();
+        data.getCars().addAll(cars.values());
+        data.getCustomers().clear();
+        data.getCustomers().addAll(customers.values());
+        data.getRentals().clear();
+        data.getRentals().addAll(rentals.values());
+
+        journal.setEntryCount(entries);
+        if (entries > 0) {
+            System.out.println("Replayed " + entries + " journal entries");
+        }
+    }
+
+    private static MutationListener.Type parseJournalType(String name) {
+        try {
+            return MutationListener.Type.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // reads the CSV file one line at a time so that memory is bounded by the longest record
+    private DataContainer readAllDataStreaming(Path file) {
+        ParseResult result = new ParseResult();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             BufferedReader reader = new BufferedReader(
+                     Channels.newReader(channel, StandardCharsets.UTF_8), READ_BUFFER_SIZE)) {
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                result.lineCount++;
+                parseRecord(line, result.lineCount, result);
+                result.printErrors();
+            }
+
+            System.out.println("Read " + result.lineCount + " lines from CSV file");
+            printLoadSummary(result);
 
         } catch (IOException e) {
             System.err.println("Error reading CSV file: " + e.getMessage());
         }
 
-        return new DataContainer(cars, customers, rentals);
+        return result.toDataContainer();
     }
 
-    // parses a car from CSV file
-    private Car parseCarFromCSV(String csvLine) {
-        try {
-            String[] parts = csvLine.split(",");
-            if (parts.length >= 6 && "CAR".equals(parts[0])) {
-                Car car = new Car(
-                        parts[1].trim(), // id
-                        parts[2].trim(), // make
-                        parts[3].trim(), // model
-                        Integer.parseInt(parts[4].trim()), // year
-                        parts[5].trim()  // type
-                );
-
-                // sets availability status
-                if (parts.length > 6) {
-                    boolean available = "Available".equalsIgnoreCase(parts[6].trim());
-                    car.setAvailable(available);
+    // splits the CSV file into newline-aligned byte ranges and parses them on a fork-join pool
+    private DataContainer readAllDataInChunks(Path file, int parallelism, boolean mapped) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] boundaries = findChunkBoundaries(channel, parallelism);
+
+            // the tasks merge left to right, so records keep their order in the file
+            ParseResult result = pool.invoke(
+                    new ChunkParseTask(channel, boundaries, 0, boundaries.length - 1, mapped));
+            result.printErrors();
+
+            System.out.println("Read " + result.lineCount + " lines from CSV file (" +
+                    (boundaries.length - 1) + " chunks, " + parallelism + " threads" +
+                    (mapped ? ", memory-mapped" : "") + ")");
+            printLoadSummary(result);
+            return result.toDataContainer();
+
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // picks chunk start offsets, each one moved forward to just after a newline
+    private long[] findChunkBoundaries(FileChannel channel, int parallelism) throws IOException {
+        long size = channel.size();
+        long chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, size / (parallelism * 4L)));
+
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long position = chunkSize;
+        while (position < size) {
+            long lineEnd = -1;
+            long scan = position;
+            while (lineEnd < 0 && scan < size) {
+                probe.clear();
+                int read = channel.read(probe, scan);
+                if (read <= 0) break;
+                for (int i = 0; i < read; i++) {
+                    if (probe.get(i) == '\n') {
+                        lineEnd = scan + i + 1;
+                        break;
+                    }
                 }
+                scan += read;
+            }
 
-                // sets  current renter if available
-                if (parts.length > 7 && !parts[7].trim().isEmpty()) {
+            if (lineEnd < 0 || lineEnd >= size) break;
+            boundaries.add(lineEnd);
+            position = lineEnd + chunkSize;
+        }
 
-                }
+        boundaries.add(size);
+        return boundaries.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private void printLoadSummary(ParseResult result) {
+        System.out.println("Loaded: " + result.cars.size() + " cars, " +
+                result.customers.size() + " customers, " +
+                result.rentals.size() + " rentals");
+    }
+
+    // tokenizes a single CSV line once and hands the fields to the matching model factory
+    private static void parseRecord(String rawLine, long lineNumber, ParseResult result) {
+        String line = rawLine.trim();
+        if (line.isEmpty() || line.charAt(0) == '#') return;
+
+        try {
+            String[] parts = splitFields(line);
+            if (parts.length < 2) return;
 
-                return car;
+            String recordType = parts[0].trim();
+
+            switch (recordType.toUpperCase()) {
+                case "CAR":
+                    Car car = parseCarFromCSV(parts);
+                    if (car != null) {
+                        result.cars.add(car);
+                    }
+                    break;
+
+                case "CUSTOMER":
+                    Customer customer = parseCustomerFromCSV(parts);
+                    if (customer != null) {
+                        result.customers.add(customer);
+                    }
+                    break;
+
+                case "RENTAL":
+                    Rental rental = parseRentalFromCSV(parts);
+                    if (rental != null) {
+                        result.rentals.add(rental);
+                    }
+                    break;
+
+                default:
+                    result.errors.add(new ParseError(lineNumber, "Unknown record ", recordType));
+            }
+        } catch (Exception e) {
+            result.errors.add(new ParseError(lineNumber, "Error parsing line ", e.getMessage()));
+        }
+    }
+
+    // same as parseRecord, but decodes the fields straight from the mapped file
+    // record types are matched ignoring case like parseRecord does, so both read modes load the same records
+    private static void parseMappedRecord(ByteFieldReader fields, long lineNumber, ParseResult result) {
+        try {
+            if (fields.fieldCount() < 2) return;
+
+            if (fields.equalsAscii(0, "RENTAL", true)) {
+                if (fields.fieldCount() >= 10) {
+                    result.rentals.add(new Rental(
+                            fields.string(1), // rentalId
+                            fields.string(2), // customerId
+                            fields.string(3), // carId
+                            fields.date(4), // startDate
+                            fields.date(5), // endDate
+                            fields.isEmpty(6) ? null : fields.date(6), // actualReturnDate
+                            fields.decimal(7), // dailyRate
+                            fields.decimal(8), // totalCost
+                            rentalStatus(fields, 9), // status
+                            fields.fieldCount() > 10 ? fields.string(10).replace(";", ",") : ""
+                    ));
+                }
+            } else if (fields.equalsAscii(0, "CUSTOMER", true)) {
+                if (fields.fieldCount() >= 7) {
+                    result.customers.add(new Customer(
+                            fields.string(1), // customerId
+                            fields.string(2), // name
+                            fields.string(3), // email
+                            fields.string(4), // phone
+                            fields.string(5), // licenseNumber
+                            fields.date(6) // registrationDate
+                    ));
+                }
+            } else if (fields.equalsAscii(0, "CAR", true)) {
+                if (fields.fieldCount() >= 6) {
+                    Car car = new Car(
+                            fields.trimmedString(1), // id
+                            fields.trimmedString(2), // make
+                            fields.trimmedString(3), // model
+                            fields.integer(4), // year
+                            fields.trimmedString(5) // type
+                    );
+                    if (fields.fieldCount() > 6) {
+                        car.setAvailable(fields.equalsAscii(6, "Available", true));
+                    }
+                    result.cars.add(car);
+                }
+            } else {
+                result.errors.add(new ParseError(lineNumber, "Unknown record ", fields.trimmedString(0)));
             }
         } catch (Exception e) {
-            System.err.println("Error parsing car from CSV: " + e.getMessage());
+            result.errors.add(new ParseError(lineNumber, "Error parsing line ", e.getMessage()));
+        }
+    }
+
+    // matches the status against the enum names in place, so no String is decoded for it
+    private static RentalStatus rentalStatus(ByteFieldReader fields, int field) {
+        for (RentalStatus status : RentalStatus.VALUES) {
+            if (fields.equalsAscii(field, status.name(), true)) {
+                return status;
+            }
+        }
+        throw new IllegalArgumentException("Unknown rental status: " + fields.string(field));
+    }
+
+    // splits a CSV line on commas in a single pass (no regex, empty fields are kept)
+    static String[] splitFields(String line) {
+        int count = 1;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == ',') count++;
+        }
+
+        String[] fields = new String[count];
+        int field = 0;
+        int start = 0;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == ',') {
+                fields[field++] = line.substring(start, i);
+                start = i + 1;
+            }
         }
-        return null;
+        fields[field] = line.substring(start);
+        return fields;
     }
 
-    // writes all the data to the CSV file
+    // the parsers below take already tokenized CSV fields and return null for a record with too few fields
+    // unlike Car, Customer.fromCSV and Rental.fromCSV they throw on a bad value (e.g. an unknown type or status),
+    // so parseRecord reports it with its line number
+    private static Car parseCarFromCSV(String[] parts) {
+        if (parts.length < 6) {
+            return null;
+        }
+        Car car = new Car(
+                parts[1].trim(), // id
+                parts[2].trim(), // make
+                parts[3].trim(), // model
+                Integer.parseInt(parts[4].trim()), // year
+                parts[5].trim()  // type
+        );
+
+        // sets availability status
+        if (parts.length > 6) {
+            car.setAvailable("Available".equalsIgnoreCase(parts[6].trim()));
+        }
+        return car;
+    }
+
+    private static Customer parseCustomerFromCSV(String[] parts) {
+        if (parts.length < 7) {
+            return null;
+        }
+        return new Customer(
+                parts[1], // customerId
+                parts[2], // name
+                parts[3], // email
+                parts[4], // phone
+                parts[5], // licenseNumber
+                LocalDate.parse(parts[6]) // registrationDate
+        );
+    }
+
+    private static Rental parseRentalFromCSV(String[] parts) {
+        if (parts.length < 10) {
+            return null;
+        }
+        return new Rental(
+                parts[1], // rentalId
+                parts[2], // customerId
+                parts[3], // carId
+                LocalDate.parse(parts[4]), // startDate
+                LocalDate.parse(parts[5]), // endDate
+                parts[6].isEmpty() ? null : LocalDate.parse(parts[6]), // actualReturnDate
+                Double.parseDouble(parts[7]), // dailyRate
+                Double.parseDouble(parts[8]), // totalCost
+                parts[9], // status
+                parts.length > 10 ? parts[10].replace(";", ",") : ""
+        );
+    }
+
+    // writes a full snapshot of all the data to the CSV file and starts a new journal
     public boolean writeAllData(List<Car> cars, List<Customer> customers, List<Rental> rentals) {
         try {
             // creates backup before writing
@@ -210,9 +697,14 @@ public class FileHandler {
                 lines.add(rental.toCSV());
             }
 
-            // writes to file
-            Path file = Paths.get(filePath);
-            Files.write(file, lines, StandardCharsets.UTF_8);
+            // writes to a temp file and renames it over the data file
+            StringBuilder content = new StringBuilder();
+            for (String line : lines) {
+                content.append(line).append(System.lineSeparator());
+            }
+            replaceAtomically(Paths.get(filePath), StandardCharsets.UTF_8.encode(CharBuffer.wrap(content)));
+            writeBinarySnapshot(cars, customers, rentals);
+            journal.clear();
 
             System.out.println("Data saved successfully: " + cars.size() + " cars, " +
                     customers.size() + " customers, " +
@@ -225,6 +717,76 @@ public class FileHandler {
         }
     }
 
+    // moves the sequences up to their saved high-water marks (one PREFIX=number line each),
+    // so ids of records removed before the last save are not handed out again
+    public void readIdSequences(IdSequence... sequences) {
+        if (!Files.exists(sequencesPath)) {
+            return;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(sequencesPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf('=');
+                if (separator <= 0) continue;
+
+                String prefix = line.substring(0, separator).trim();
+                for (IdSequence sequence : sequences) {
+                    if (sequence.getPrefix().equals(prefix)) {
+                        sequence.advanceTo(Long.parseLong(line.substring(separator + 1).trim()));
+                    }
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Error reading id sequences: " + e.getMessage());
+        }
+    }
+
+    // saves the high-water mark of every sequence, call after a snapshot or after a batch run
+    public boolean writeIdSequences(IdSequence... sequences) {
+        StringBuilder content = new StringBuilder();
+        for (IdSequence sequence : sequences) {
+            content.append(sequence.getPrefix()).append('=').append(sequence.getLast()).append(System.lineSeparator());
+        }
+
+        try {
+            replaceAtomically(sequencesPath, StandardCharsets.UTF_8.encode(CharBuffer.wrap(content)));
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error writing id sequences: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // writes the binary copy of a snapshot, a stale copy is removed so it is never loaded
+    private void writeBinarySnapshot(List<Car> cars, List<Customer> customers, List<Rental> rentals) {
+        try {
+            binarySnapshot.write(cars, customers, rentals);
+        } catch (IOException e) {
+            System.err.println("Error writing binary snapshot: " + e.getMessage());
+            try {
+                Files.deleteIfExists(binarySnapshot.getPath());
+            } catch (IOException ignored) {
+                // the older CSV timestamp check keeps it from being used
+            }
+        }
+    }
+
+    // appends the changes made since the last save to the journal
+    public boolean writeChanges(List<ChangeTracker.Change> changes) {
+        return journal.append(changes);
+    }
+
+    // journal that records every change between two snapshots
+    public Journal getJournal() {
+        return journal;
+    }
+
+    // a full snapshot is only written once SNAPSHOT_INTERVAL changes were journaled
+    public boolean isSnapshotDue() {
+        return journal.getEntryCount() >= SNAPSHOT_INTERVAL;
+    }
+
     // checks if the CSV file exists
     public boolean fileExists() {
         return Files.exists(Paths.get(filePath));
@@ -261,11 +823,138 @@ public class FileHandler {
         }
     }
 
+    // parses one byte range of the file, splitting the range in halves until it is a single chunk
+    private static class ChunkParseTask extends RecursiveTask<ParseResult> {
+        // ForkJoinTask is Serializable, these tasks are never serialized
+        private static final long serialVersionUID = 1L;
+        private final transient FileChannel channel;
+        private final long[] boundaries;
+        private final int fromChunk;
+        private final int toChunk;
+        private final boolean mapped;
+
+        ChunkParseTask(FileChannel channel, long[] boundaries, int fromChunk, int toChunk, boolean mapped) {
+            this.channel = channel;
+            this.boundaries = boundaries;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+            this.mapped = mapped;
+        }
+
+        @Override
+        protected ParseResult compute() {
+            if (toChunk - fromChunk > 1) {
+                int middle = (fromChunk + toChunk) >>> 1;
+                ChunkParseTask left = new ChunkParseTask(channel, boundaries, fromChunk, middle, mapped);
+                ChunkParseTask right = new ChunkParseTask(channel, boundaries, middle, toChunk, mapped);
+                right.fork();
+                ParseResult result = left.compute();
+                result.append(right.join());
+                return result;
+            }
+
+            try {
+                if (mapped) {
+                    return parseMappedChunk(boundaries[fromChunk], boundaries[toChunk]);
+                }
+                return parseChunk(boundaries[fromChunk], boundaries[toChunk]);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        // the range always starts at a line start, so UTF-8 sequences are never cut in half
+        private ParseResult parseChunk(long start, long end) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) break;
+            }
+            String text = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+
+            // line numbers are relative to the chunk and get shifted when chunks are merged
+            ParseResult result = new ParseResult();
+            int lineStart = 0;
+            while (lineStart < text.length()) {
+                int lineEnd = text.indexOf('\n', lineStart);
+                if (lineEnd < 0) lineEnd = text.length();
+                result.lineCount++;
+                parseRecord(text.substring(lineStart, lineEnd), result.lineCount, result);
+                lineStart = lineEnd + 1;
+            }
+            return result;
+        }
+
+        // maps the range read-only and lets the page cache supply the bytes
+        private ParseResult parseMappedChunk(long start, long end) throws IOException {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            ByteFieldReader fields = new ByteFieldReader(buffer);
+
+            ParseResult result = new ParseResult();
+            int limit = buffer.limit();
+            int lineStart = 0;
+            while (lineStart < limit) {
+                int lineEnd = lineStart;
+                while (lineEnd < limit && buffer.get(lineEnd) != '\n') lineEnd++;
+                result.lineCount++;
+                if (fields.readLine(lineStart, lineEnd)) {
+                    parseMappedRecord(fields, result.lineCount, result);
+                }
+                lineStart = lineEnd + 1;
+            }
+            return result;
+        }
+    }
+
+    // records and errors parsed from one part of the file
+    private static class ParseResult {
+        private final List<Car> cars = new ArrayList<>();
+        private final List<Customer> customers = new ArrayList<>();
+        private final List<Rental> rentals = new ArrayList<>();
+        private final List<ParseError> errors = new ArrayList<>();
+        private long lineCount;
+
+        // appends the result of the part that directly follows this one in the file
+        void append(ParseResult next) {
+            cars.addAll(next.cars);
+            customers.addAll(next.customers);
+            rentals.addAll(next.rentals);
+            for (ParseError error : next.errors) {
+                errors.add(new ParseError(error.lineNumber + lineCount, error.message, error.detail));
+            }
+            lineCount += next.lineCount;
+        }
+
+        void printErrors() {
+            for (ParseError error : errors) {
+                System.err.println(error.message + error.lineNumber + ": " + error.detail);
+            }
+            errors.clear();
+        }
+
+        DataContainer toDataContainer() {
+            return new DataContainer(cars, customers, rentals);
+        }
+    }
+
+    private static class ParseError {
+        private final long lineNumber;
+        private final String message;
+        private final String detail;
+
+        ParseError(long lineNumber, String message, String detail) {
+            this.lineNumber = lineNumber;
+            this.message = message;
+            this.detail = detail;
+        }
+    }
+
     // class to hold all loaded data
     public static class DataContainer {
         private final List<Car> cars;
         private final List<Customer> customers;
         private final List<Rental> rentals;
+        private long deduplicatedStrings;
+        private long deduplicationSavedBytes;
 
         public DataContainer(List<Car> cars, List<Customer> customers, List<Rental> rentals) {
             this.cars = cars;
@@ -284,5 +973,15 @@ public class FileHandler {
         public List<Rental> getRentals() {
             return rentals;
         }
+
+        // duplicate strings replaced by a shared instance when the data was loaded
+        public long getDeduplicatedStrings() {
+            return deduplicatedStrings;
+        }
+
+        // estimated heap freed by that, in bytes
+        public long getDeduplicationSavedBytes() {
+            return deduplicationSavedBytes;
+        }
     }
 }
\ No newline at end of file
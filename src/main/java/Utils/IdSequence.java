@@ -0,0 +1,83 @@
+package Utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// hands out ids like C001, CUST001 or R001 without looking at the existing records
+// the counter is seeded once from the loaded ids (and the saved high-water mark) and only moves up,
+// so an id is never handed out twice, even after the record that had it was removed
+// numbers are padded to three digits like the old ids and simply grow past 999
+public class IdSequence {
+
+    public static final int MIN_DIGITS = 3;
+    // more digits could overflow a long
+    public static final int MAX_DIGITS = 18;
+
+    private final String prefix;
+    private final AtomicLong last = new AtomicLong();
+
+    public IdSequence(String prefix) {
+        this.prefix = prefix;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    // highest number handed out or seen so far
+    public long getLast() {
+        return last.get();
+    }
+
+    // makes sure the sequence continues after the given id, ids with another format are ignored
+    public void observe(String id) {
+        advanceTo(parseNumber(id, prefix));
+    }
+
+    public void advanceTo(long number) {
+        last.accumulateAndGet(number, Math::max);
+    }
+
+    public String next() {
+        return format(prefix, last.incrementAndGet());
+    }
+
+    // reserves count consecutive numbers for a bulk import in one step and returns the first one,
+    // format(first + i) gives the ids; the high-water mark is saved like the one of next()
+    public long reserve(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Cannot reserve " + count + " ids");
+        }
+        return last.getAndAdd(count) + 1;
+    }
+
+    public String format(long number) {
+        return format(prefix, number);
+    }
+
+    public static String format(String prefix, long number) {
+        String digits = Long.toString(number);
+        StringBuilder id = new StringBuilder(prefix.length() + Math.max(MIN_DIGITS, digits.length())).append(prefix);
+        for (int i = digits.length(); i < MIN_DIGITS; i++) {
+            id.append('0');
+        }
+        return id.append(digits).toString();
+    }
+
+    // the number after the prefix (matched ignoring case), or 0 if the id does not have that format
+    public static long parseNumber(String id, String prefix) {
+        if (id == null || id.length() <= prefix.length() || id.length() > prefix.length() + MAX_DIGITS
+                || !id.regionMatches(true, 0, prefix, 0, prefix.length())) {
+            return 0;
+        }
+
+        long number = 0;
+        for (int i = prefix.length(); i < id.length(); i++) {
+            int digit = id.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return 0;
+            }
+            number = number * 10 + digit;
+        }
+        return number;
+    }
+}
@@ -1,5 +1,7 @@
 package Utils;
 
+import Models.CarType;
+
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
@@ -20,9 +22,11 @@ public class InputValidator {
             "^\\+359\\s?[0-9]{3}\\s?[0-9]{3}\\s?[0-9]{3}$"
     );
 
-    private static final Pattern CAR_ID_PATTERN = Pattern.compile("^C[0-9]{3}$");
-    private static final Pattern CUSTOMER_ID_PATTERN = Pattern.compile("^CUST[0-9]{3}$");
-    private static final Pattern RENTAL_ID_PATTERN = Pattern.compile("^R[0-9]{3}$");
+    // ids have at least three digits (C001) and grow past 999 (C1000, C1234567), up to what IdSequence hands out
+    private static final String ID_DIGITS = "[0-9]{" + IdSequence.MIN_DIGITS + "," + IdSequence.MAX_DIGITS + "}$";
+    private static final Pattern CAR_ID_PATTERN = Pattern.compile("^C" + ID_DIGITS);
+    private static final Pattern CUSTOMER_ID_PATTERN = Pattern.compile("^CUST" + ID_DIGITS);
+    private static final Pattern RENTAL_ID_PATTERN = Pattern.compile("^R" + ID_DIGITS);
 
     // reads and validates non-empty string input
     public static String readNonEmptyString(String prompt) {
@@ -72,7 +76,7 @@ public class InputValidator {
                 String input = scanner.nextLine().trim();
                 value = Double.parseDouble(input);
 
-                if (value > 0) {
+                if (value > 0 && Double.isFinite(value)) {
                     return value;
                 } else {
                     System.out.println("Please enter a positive number.");
@@ -207,27 +211,22 @@ public class InputValidator {
         }
     }
 
+    // validates a daily rate, NaN and Infinity parse as doubles but are no amount
+    public static boolean isValidDailyRate(double dailyRate) {
+        return dailyRate > 0 && Double.isFinite(dailyRate);
+    }
+
     // validates if a string is an actual car type
     public static boolean isValidCarType(String carType) {
-        String[] validTypes = {"Sedan", "SUV", "Hatchback", "Coupe", "Convertible", "Wagon", "Pickup"};
-        for (String type : validTypes) {
-            if (type.equalsIgnoreCase(carType)) {
-                return true;
-            }
-        }
-        return false;
+        return CarType.fromString(carType) != null;
     }
 
     // displays available cars to the user
     public static void displayCarTypes() {
         System.out.println("Available car types:");
-        System.out.println("  • Sedan");
-        System.out.println("  • SUV");
-        System.out.println("  • Hatchback");
-        System.out.println("  • Coupe");
-        System.out.println("  • Convertible");
-        System.out.println("  • Wagon");
-        System.out.println("  • Pickup");
+        for (CarType type : CarType.values()) {
+            System.out.println("  • " + type.getDisplayName());
+        }
     }
 
     // reads and validates a car type
@@ -239,7 +238,7 @@ public class InputValidator {
 
             if (isValidCarType(carType)) {
                 // ensure proper capitalisation
-                return carType.substring(0, 1).toUpperCase() + carType.substring(1).toLowerCase();
+                return CarType.fromString(carType).getDisplayName();
             } else {
                 System.out.println("Invalid car type. Please choose from the available options.");
             }
@@ -0,0 +1,105 @@
+package Utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+// append-only log of the changes made since the last full snapshot of the CSV file
+// every line is "TYPE,<CSV record>" or "TYPE,<id>" for removals
+public class Journal {
+
+    private final Path path;
+    private FileChannel channel;
+    private long entryCount;
+    // a failed write may have left part of a line behind, the next batch then starts on a new line
+    private boolean torn;
+
+    public Journal(String journalPath) {
+        this.path = Paths.get(journalPath);
+    }
+
+    // appends a batch of changes with a single write and forces it to disk once
+    public synchronized boolean append(List<ChangeTracker.Change> changes) {
+        if (changes.isEmpty()) {
+            return true;
+        }
+
+        StringBuilder lines = new StringBuilder();
+        if (torn) {
+            lines.append(System.lineSeparator());
+        }
+        for (ChangeTracker.Change change : changes) {
+            lines.append(change.toJournalLine()).append(System.lineSeparator());
+        }
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(lines));
+
+        try {
+            if (channel == null) {
+                channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            channel.force(false);
+            entryCount += changes.size();
+            torn = false;
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error writing to journal: " + (e.getMessage() != null ? e.getMessage() : e));
+            // the channel may be closed now (e.g. ClosedChannelException), the next append opens a new one
+            torn = torn || bytes.position() > 0;
+            closeQuietly();
+            return false;
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException e) {
+            channel = null;
+        }
+    }
+
+    // drops all entries, called once they are part of a full snapshot
+    public synchronized boolean clear() {
+        try {
+            close();
+            Files.deleteIfExists(path);
+            entryCount = 0;
+            torn = false;
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error clearing journal: " + e.getMessage());
+            return false;
+        }
+    }
+
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    // number of entries written since the last snapshot
+    public synchronized long getEntryCount() {
+        return entryCount;
+    }
+
+    synchronized void setEntryCount(long entryCount) {
+        this.entryCount = entryCount;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+}
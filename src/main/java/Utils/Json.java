@@ -0,0 +1,99 @@
+package Utils;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+
+// writes the few JSON shapes the batch mode and the HTTP API need, there is no JSON library on the classpath
+// values may be null, strings, numbers, booleans, dates (written as yyyy-MM-dd), maps and collections of those
+public final class Json {
+
+    private Json() {
+    }
+
+    public static String quote(String value) {
+        return appendString(new StringBuilder(value.length() + 2), value).toString();
+    }
+
+    public static String toJson(Object value) {
+        return append(new StringBuilder(64), value).toString();
+    }
+
+    public static StringBuilder append(StringBuilder json, Object value) {
+        if (value == null) {
+            return json.append("null");
+        }
+        if (value instanceof Double || value instanceof Float) {
+            double number = ((Number) value).doubleValue();
+            if (Double.isNaN(number) || Double.isInfinite(number)) {
+                return json.append("null");
+            }
+            // money and averages, two decimals are all the services ever show
+            return json.append(String.format(Locale.ROOT, "%.2f", number));
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return json.append(value);
+        }
+        if (value instanceof Map) {
+            json.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) {
+                    json.append(',');
+                }
+                first = false;
+                appendString(json, String.valueOf(entry.getKey())).append(':');
+                append(json, entry.getValue());
+            }
+            return json.append('}');
+        }
+        if (value instanceof Collection) {
+            json.append('[');
+            boolean first = true;
+            for (Object element : (Collection<?>) value) {
+                if (!first) {
+                    json.append(',');
+                }
+                first = false;
+                append(json, element);
+            }
+            return json.append(']');
+        }
+        if (value instanceof LocalDate) {
+            return json.append('"').append(value).append('"');
+        }
+        return appendString(json, value.toString());
+    }
+
+    private static StringBuilder appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        return json.append('"');
+    }
+}
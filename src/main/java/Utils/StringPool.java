@@ -0,0 +1,58 @@
+package Utils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// hands out one canonical instance per distinct string value, used once per load and then dropped
+// every duplicate it replaces can be collected, savedBytes estimates how much heap that frees
+class StringPool {
+
+    private final Map<String, String> canonical = new HashMap<>();
+    private long duplicates;
+    private long savedBytes;
+
+    // the first instance seen of a value wins, so intern the strings that must stay shared first
+    String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String existing = canonical.putIfAbsent(value, value);
+        if (existing == null) {
+            return value;
+        }
+        if (existing != value) {
+            duplicates++;
+            savedBytes += estimateSize(value);
+        }
+        return existing;
+    }
+
+    long getDuplicates() {
+        return duplicates;
+    }
+
+    long getSavedBytes() {
+        return savedBytes;
+    }
+
+    int size() {
+        return canonical.size();
+    }
+
+    // String object (24 bytes) plus its byte array (16 byte header, one byte per char for latin-1
+    // text and two otherwise), both rounded up to 8 bytes as on a 64-bit JVM with compressed oops
+    private static long estimateSize(String value) {
+        int bytesPerChar = 1;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0xFF) {
+                bytesPerChar = 2;
+                break;
+            }
+        }
+        return 24 + align(16L + (long) value.length() * bytesPerChar);
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+}
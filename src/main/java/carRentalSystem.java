@@ -1,13 +1,28 @@
 import Models.Car;
 import Models.Customer;
 import Models.Rental;
+import Services.BackgroundSaver;
+import Services.BatchRunner;
 import Services.CarService;
 import Services.CustomerService;
+import Services.HttpApi;
 import Services.RentalService;
 import Utils.FileHandler;
+import Utils.IdSequence;
 import Utils.InputValidator;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 public class carRentalSystem {
 
@@ -15,30 +30,54 @@ public class carRentalSystem {
     private CustomerService customerService;
     private RentalService rentalService;
     private FileHandler fileHandler;
+    private BackgroundSaver backgroundSaver;
+
+    // how long the background saver collects changes before writing them in one batch
+    private static final long SAVE_BATCH_WINDOW_MILLIS = Long.getLong("carRental.saveBatchWindowMillis", 200);
 
     // app state
     private boolean isRunning;
+    private final boolean interactive;
+    // MAPPED is opt-in: a mapping lives until the buffer is garbage collected, and on Windows an open mapping
+    // keeps the atomic save from replacing the data file; main takes it from -DcarRental.readMode
+    private final FileHandler.ReadMode readMode;
+    private boolean snapshotRequired; // set when data changed without going through the journal
+    // string deduplication of the last load
+    private long deduplicatedStrings;
+    private long deduplicationSavedBytes;
 
     public carRentalSystem() {
+        this(true, FileHandler.ReadMode.STANDARD);
+    }
+
+    // without interaction nothing is ever asked on the console, e.g. whether to create sample data
+    public carRentalSystem(boolean interactive, FileHandler.ReadMode readMode) {
+        this.interactive = interactive;
+        this.readMode = readMode;
         this.fileHandler = new FileHandler();
+        this.fileHandler.setReadMode(readMode);
         this.isRunning = true;
 
-        // loads data from CSV
+        // loads data from CSV and the journal
         loadSystemData();
 
-        this.carService = new CarService();
-        this.customerService = new CustomerService();
-        this.rentalService = new RentalService(carService, customerService);
-
         System.out.println("Car Rental System initialized successfully!");
     }
 
     // entry point
     public static void main(String[] args) {
+        FileHandler.ReadMode readMode = parseReadMode(System.getProperty("carRental.readMode"));
+        if (args.length > 0 && "--batch".equals(args[0])) {
+            System.exit(runBatch(args, readMode));
+        }
+        if (args.length > 0 && "--serve".equals(args[0])) {
+            System.exit(runServer(args, readMode));
+        }
+
         try {
             displayWelcomeMessage();
 
-            carRentalSystem system = new carRentalSystem();
+            carRentalSystem system = new carRentalSystem(true, readMode);
             system.run();
 
         } catch (Exception e) {
@@ -49,6 +88,137 @@ public class carRentalSystem {
         }
     }
 
+    // the read mode named by the property in any case, STANDARD if it is not set or unknown
+    private static FileHandler.ReadMode parseReadMode(String value) {
+        if (value == null || value.isBlank()) {
+            return FileHandler.ReadMode.STANDARD;
+        }
+        try {
+            return FileHandler.ReadMode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown read mode '" + value + "' in carRental.readMode, using STANDARD.");
+            return FileHandler.ReadMode.STANDARD;
+        }
+    }
+
+    // carRentalSystem --batch [file|-] [--no-save] [--verbose]
+    // runs the commands of the file (stdin if none or "-") and prints one JSON line per command on stdout,
+    // see BatchRunner for the command format; --no-save leaves the data files untouched (e.g. for load tests),
+    // --verbose sends what the services print to stderr instead of dropping it
+    // exit code 0 if every command succeeded, 1 if some failed, 2 if the batch could not run
+    private static int runBatch(String[] args, FileHandler.ReadMode readMode) {
+        String file = null;
+        boolean save = true;
+        boolean verbose = false;
+        for (int i = 1; i < args.length; i++) {
+            if ("--no-save".equals(args[i])) {
+                save = false;
+            } else if ("--verbose".equals(args[i])) {
+                verbose = true;
+            } else if (file == null) {
+                file = args[i];
+            } else {
+                System.err.println("Usage: carRentalSystem --batch [file|-] [--no-save] [--verbose]");
+                return 2;
+            }
+        }
+
+        // stdout only carries results, loading and saving messages go to stderr or nowhere
+        PrintStream results = System.out;
+        System.setOut(verbose ? System.err : new PrintStream(OutputStream.nullOutputStream()));
+        try (BufferedReader in = file == null || "-".equals(file)
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            carRentalSystem system = new carRentalSystem(false, readMode);
+            if (!save) {
+                system.disableSaving();
+            }
+
+            BatchRunner.Summary summary = new BatchRunner(system.carService, system.customerService,
+                    system.rentalService).run(in, results);
+
+            if (save) {
+                // journals the last changes, or writes a snapshot if the journal got long
+                system.saveSystemData(false);
+                if (!system.stopBackgroundSaver()) {
+                    system.saveSystemData(true);
+                }
+                system.fileHandler.writeIdSequences(system.getIdSequences());
+            }
+            return summary.getFailed() == 0 ? 0 : 1;
+
+        } catch (IOException e) {
+            System.err.println("Error reading batch commands: " + e.getMessage());
+            return 2;
+        } finally {
+            System.setOut(results);
+        }
+    }
+
+    // carRentalSystem --serve [port] [--host address] [--no-save]
+    // serves the HTTP API (see HttpApi) until the process is stopped, on localhost:8080 by default
+    // changes are journaled by the background saver while serving and flushed on shutdown
+    private static int runServer(String[] args, FileHandler.ReadMode readMode) {
+        int port = 8080;
+        String host = "localhost";
+        boolean save = true;
+        try {
+            for (int i = 1; i < args.length; i++) {
+                if ("--no-save".equals(args[i])) {
+                    save = false;
+                } else if ("--host".equals(args[i]) && i + 1 < args.length) {
+                    host = args[++i];
+                } else {
+                    port = Integer.parseInt(args[i]);
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("Usage: carRentalSystem --serve [port] [--host address] [--no-save]");
+            return 2;
+        }
+
+        // what the services print is of no use to an API client
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        carRentalSystem system = new carRentalSystem(false, readMode);
+        if (!save) {
+            system.disableSaving();
+        }
+
+        HttpApi api = new HttpApi(system.carService, system.customerService, system.rentalService);
+        try {
+            api.start(host, port);
+        } catch (IOException e) {
+            System.err.println("Cannot start the HTTP API on " + host + ":" + port + ": " + e.getMessage());
+            return 2;
+        }
+
+        boolean saveOnExit = save;
+        Thread shutdown = new Thread(() -> {
+            api.stop();
+            if (saveOnExit) {
+                system.saveSystemData(false);
+                if (!system.stopBackgroundSaver()) {
+                    system.saveSystemData(true);
+                }
+                system.fileHandler.writeIdSequences(system.getIdSequences());
+            }
+            console.println("HTTP API stopped.");
+            console.flush();
+        });
+        Runtime.getRuntime().addShutdownHook(shutdown);
+
+        console.println("HTTP API listening on http://" + host + ":" + api.getPort() + "/");
+        console.flush();
+        // the server threads do the work, main only waits for the process to be stopped (Ctrl+C or SIGTERM)
+        try {
+            Thread.currentThread().join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return 0;
+    }
+
     public void run() {
         while (isRunning) {
             try {
@@ -327,8 +497,9 @@ public class carRentalSystem {
         System.out.println("3. Rental Statistics");
         System.out.println("4. Financial Summary");
         System.out.println("5. System Overview");
+        System.out.println("6. Revenue & Utilization Report");
 
-        int choice = InputValidator.readIntInRange("Choose report: ", 1, 5);
+        int choice = InputValidator.readIntInRange("Choose report: ", 1, 6);
 
         switch (choice) {
             case 1:
@@ -346,6 +517,9 @@ public class carRentalSystem {
             case 5:
                 displaySystemOverview();
                 break;
+            case 6:
+                rentalService.displayRevenueReportInteractive();
+                break;
         }
     }
 
@@ -357,8 +531,9 @@ public class carRentalSystem {
         System.out.println("3. Search Rentals by Customer");
         System.out.println("4. Search Rentals by Car");
         System.out.println("5. Search Overdue Rentals");
+        System.out.println("6. Find Cars Free Between Dates");
 
-        int choice = InputValidator.readIntInRange("Choose search type: ", 1, 5);
+        int choice = InputValidator.readIntInRange("Choose search type: ", 1, 6);
 
         switch (choice) {
             case 1:
@@ -382,6 +557,12 @@ public class carRentalSystem {
             case 5:
                 rentalService.displayOverdueRentals();
                 break;
+            case 6:
+                LocalDate fromDate = InputValidator.readDate("Enter start date");
+                LocalDate toDate = InputValidator.readDateAfter("Enter end date", fromDate);
+                List<Car> freeCars = rentalService.getCarsFreeBetween(fromDate, toDate);
+                carService.displayCarList(freeCars, "Cars Free From " + fromDate + " To " + toDate);
+                break;
         }
     }
 
@@ -399,7 +580,7 @@ public class carRentalSystem {
 
         switch (choice) {
             case 1:
-                saveSystemData();
+                saveSystemData(true);
                 break;
             case 2:
                 loadSystemData();
@@ -412,10 +593,29 @@ public class carRentalSystem {
                 }
                 break;
             case 4:
-                boolean confirm = InputValidator.readYesNo("This will overwrite current data. Continue?");
-                if (confirm && fileHandler.restoreFromBackup()) {
+                int generations = fileHandler.getBackupGenerationCount();
+                if (generations == 0) {
+                    System.out.println("No backups available.");
+                    break;
+                }
+
+                System.out.println("Available backups (1 is the latest):");
+                for (int generation = 1; generation <= generations; generation++) {
+                    System.out.println("  " + fileHandler.describeBackup(generation));
+                }
+                int generation = InputValidator.readIntInRange("Choose backup to restore: ", 1, generations);
+
+                if (!InputValidator.readYesNo("This will overwrite current data. Continue?")) {
+                    break;
+                }
+                // the saver must not write to the journal while the restore replaces it
+                stopBackgroundSaver();
+                if (fileHandler.restoreFromBackup(generation)) {
                     loadSystemData();
                     System.out.println("Data restored from backup.");
+                } else {
+                    System.out.println("Failed to restore from backup, current data kept.");
+                    startBackgroundSaver();
                 }
                 break;
             case 5:
@@ -465,6 +665,7 @@ public class carRentalSystem {
         System.out.println("• Complete car fleet management");
         System.out.println("• Customer registration with Bulgarian phone support");
         System.out.println("• Rental operations with cost calculation");
+        System.out.println("• Future reservations with overlap checking per car");
         System.out.println("• CSV data persistence without external libraries");
         System.out.println("• Advanced search and reporting capabilities");
         System.out.println("• Data validation and integrity checking");
@@ -477,24 +678,30 @@ public class carRentalSystem {
         System.out.println("• Manual CSV file operations");
         System.out.println();
         System.out.println(" ID FORMATS:");
-        System.out.println("• Car IDs: C001, C002, C003...");
-        System.out.println("• Customer IDs: CUST001, CUST002, CUST003...");
-        System.out.println("• Rental IDs: R001, R002, R003...");
+        System.out.println("• Car IDs: C001, C002, ... C999, C1000...");
+        System.out.println("• Customer IDs: CUST001, CUST002, ... CUST999, CUST1000...");
+        System.out.println("• Rental IDs: R001, R002, ... R999, R1000...");
+        System.out.println("• IDs have " + IdSequence.MIN_DIGITS + " to " + IdSequence.MAX_DIGITS + " digits");
         System.out.println("• Phone Format: +359 XXX XXX XXX");
         System.out.println();
         System.out.println(" DATA STORAGE:");
         System.out.println("• Location: data/rentals.csv");
         System.out.println("• Format: Single CSV file with record types");
-        System.out.println("• Backup: Automatic backup before changes");
+        System.out.println("• Changes: Appended to data/rentals.journal in the background");
+        System.out.println("• Backup: Automatic backup before each snapshot, last 5 kept");
     }
 
     // application exit
     private void handleExit() {
         InputValidator.displaySection("EXIT APPLICATION");
 
-        boolean saveData = InputValidator.readYesNo("Save current data before exiting?");
-        if (saveData) {
-            saveSystemData();
+        // pending changes are always written when the background saver stops; after a reset or a failed
+        // journal write they are only in memory, and a long journal would only keep growing across sessions,
+        // so in those cases the snapshot is written without asking
+        if (!stopBackgroundSaver() || snapshotRequired || fileHandler.isSnapshotDue()) {
+            saveSystemData(true);
+        } else if (InputValidator.readYesNo("Write a full data snapshot before exiting?")) {
+            saveSystemData(true);
         }
 
         System.out.println("Exiting Car Rental System...");
@@ -503,14 +710,19 @@ public class carRentalSystem {
 
     // loads system data from CSV
     private void loadSystemData() {
+        stopBackgroundSaver();
         try {
             FileHandler.DataContainer data = fileHandler.readAllData();
+            deduplicatedStrings = data.getDeduplicatedStrings();
+            deduplicationSavedBytes = data.getDeduplicationSavedBytes();
 
             this.carService = new CarService(data.getCars());
             this.customerService = new CustomerService(data.getCustomers());
             this.rentalService = new RentalService(data.getRentals(), carService, customerService);
+            fileHandler.readIdSequences(getIdSequences());
 
             rentalService.synchronizeData();
+            startBackgroundSaver();
 
             System.out.println("System data loaded successfully.");
 
@@ -520,8 +732,9 @@ public class carRentalSystem {
             this.carService = new CarService();
             this.customerService = new CustomerService();
             this.rentalService = new RentalService(carService, customerService);
+            startBackgroundSaver();
 
-            if (!fileHandler.fileExists()) {
+            if (interactive && !fileHandler.fileExists()) {
                 boolean createSample = InputValidator.readYesNo("No data file found. Create sample data?");
                 if (createSample) {
                     createSampleData();
@@ -530,10 +743,35 @@ public class carRentalSystem {
         }
     }
 
-    // saves system to CSV file
-    private void saveSystemData() {
+    private IdSequence[] getIdSequences() {
+        return new IdSequence[]{carService.getIdSequence(), customerService.getIdSequence(),
+                rentalService.getIdSequence()};
+    }
+
+    // saves system data: only what changed since the last save is appended to the journal,
+    // a full CSV snapshot is written when asked for, when the journal got long or when no background saver
+    // runs to journal the changes (while it runs, it also writes one on its own once the journal got long)
+    private void saveSystemData(boolean fullSnapshot) {
         try {
-            boolean success = fileHandler.writeAllData(carService.getAllCars(), customerService.getAllCustomers(), rentalService.getAllRentals());
+            boolean success;
+            boolean snapshot = fullSnapshot || snapshotRequired || fileHandler.isSnapshotDue() || backgroundSaver == null;
+            if (snapshot && backgroundSaver != null) {
+                // the saver writes it, so the snapshot and its own flushes never interleave
+                success = backgroundSaver.writeSnapshot();
+                snapshotRequired = snapshotRequired && !success;
+            } else if (snapshot) {
+                success = fileHandler.writeAllData(carService.getAllCars(), customerService.getAllCustomers(), rentalService.getAllRentals());
+                if (success) {
+                    fileHandler.writeIdSequences(getIdSequences());
+                    // the snapshot already contains every pending change
+                    carService.drainChanges();
+                    customerService.drainChanges();
+                    rentalService.drainChanges();
+                }
+                snapshotRequired = snapshotRequired && !success;
+            } else {
+                success = backgroundSaver.flush();
+            }
 
             if (success) {
                 System.out.println("System data saved successfully.");
@@ -546,6 +784,37 @@ public class carRentalSystem {
         }
     }
 
+    // changes of the current services are written in the background from now on
+    private void startBackgroundSaver() {
+        backgroundSaver = new BackgroundSaver(carService, customerService, rentalService,
+                fileHandler, SAVE_BATCH_WINDOW_MILLIS);
+        backgroundSaver.start();
+    }
+
+    // writes what is still pending and stops the background saver
+    // if that last write fails, the changes are only in memory and the next save writes a full snapshot
+    private boolean stopBackgroundSaver() {
+        if (backgroundSaver == null) {
+            return true;
+        }
+        boolean flushed = backgroundSaver.stop();
+        backgroundSaver = null;
+        if (!flushed) {
+            System.err.println("Pending changes could not be journaled, a full snapshot is required.");
+            snapshotRequired = true;
+        }
+        return flushed;
+    }
+
+    // for runs that never save (--no-save): nothing has changed yet, so stopping the saver writes nothing,
+    // and the services stop keeping changes no one will write
+    private void disableSaving() {
+        stopBackgroundSaver();
+        carService.stopTrackingChanges();
+        customerService.stopTrackingChanges();
+        rentalService.stopTrackingChanges();
+    }
+
     // handles sample data for test and demonstration
     private void createSampleData() {
         InputValidator.displaySection("Creating Sample Data");
@@ -570,18 +839,14 @@ public class carRentalSystem {
     private void displayFinancialSummary() {
         InputValidator.displaySection("FINANCIAL SUMMARY");
 
-        List<Rental> completedRentals = rentalService.getCompletedRentals();
-        double totalRevenue = completedRentals.stream().mapToDouble(Rental::getTotalCost).sum();
+        System.out.printf("Total Revenue: $%.2f%n", rentalService.getTotalRevenue());
+        System.out.printf("Average Rental Value: $%.2f%n", rentalService.getAverageRentalCost());
+        System.out.println("Completed Rentals: " + rentalService.getCompletedRentalCount());
+        System.out.println("Active Rentals: " + rentalService.getActiveRentalCount());
 
-        double averageRental = completedRentals.stream().mapToDouble(Rental::getTotalCost).average().orElse(0.0);
-
-        System.out.printf("Total Revenue: $%.2f%n", totalRevenue);
-        System.out.printf("Average Rental Value: $%.2f%n", averageRental);
-        System.out.println("Completed Rentals: " + completedRentals.size());
-        System.out.println("Active Rentals: " + rentalService.getActiveRentals().size());
-
-        if (!rentalService.getOverdueRentals().isEmpty()) {
-            System.out.println("Overdue Rentals: " + rentalService.getOverdueRentals().size());
+        int overdueCount = rentalService.getOverdueCount();
+        if (overdueCount > 0) {
+            System.out.println("Overdue Rentals: " + overdueCount);
         }
     }
 
@@ -590,20 +855,21 @@ public class carRentalSystem {
         InputValidator.displaySection("SYSTEM OVERVIEW");
 
         System.out.println(" FLEET STATUS:");
-        System.out.println("  Total Cars: " + carService.getAllCars().size());
-        System.out.println("  Available Cars: " + carService.getAvailableCars().size());
-        System.out.println("  Rented Cars: " + carService.getRentedCars().size());
+        System.out.println("  Total Cars: " + carService.getCarCount());
+        System.out.println("  Available Cars: " + carService.getAvailableCarCount());
+        System.out.println("  Rented Cars: " + carService.getRentedCarCount());
 
         System.out.println("\n CUSTOMER BASE:");
         System.out.println("  Total Customers: " + customerService.getAllCustomers().size());
 
         System.out.println("\n RENTAL ACTIVITY:");
-        System.out.println("  Total Rentals: " + rentalService.getAllRentals().size());
-        System.out.println("  Active Rentals: " + rentalService.getActiveRentals().size());
-        System.out.println("  Completed Rentals: " + rentalService.getCompletedRentals().size());
+        System.out.println("  Total Rentals: " + rentalService.getRentalCount());
+        System.out.println("  Active Rentals: " + rentalService.getActiveRentalCount());
+        System.out.println("  Completed Rentals: " + rentalService.getCompletedRentalCount());
 
-        if (!rentalService.getOverdueRentals().isEmpty()) {
-            System.out.println("Overdue Rentals: " + rentalService.getOverdueRentals().size());
+        int overdueCount = rentalService.getOverdueCount();
+        if (overdueCount > 0) {
+            System.out.println("Overdue Rentals: " + overdueCount);
         }
 
         System.out.println("\n DATA STATUS:");
@@ -621,14 +887,17 @@ public class carRentalSystem {
         System.out.println("Data integrity check completed.");
     }
 
-    // this method is optional !! it clears all completed rental data
+    // this method is optional !! it compacts all completed rental data
     private void cleanUpOldRentals() {
         System.out.println("📊 Rental cleanup information:");
-        System.out.println("  Total rentals: " + rentalService.getAllRentals().size());
-        System.out.println("  Completed rentals: " + rentalService.getCompletedRentals().size());
+        System.out.println("  Total rentals: " + rentalService.getRentalCount());
+        System.out.println("  Completed rentals: " + rentalService.getCompletedRentalCount());
         System.out.println();
+
+        // nothing is deleted, finished rentals only move to the compact history storage
+        int archived = rentalService.archiveInactiveRentals();
+        System.out.println("  Moved to compact history storage: " + archived);
         System.out.println("ℹ️ Note: Rental history is preserved for record keeping.");
-        System.out.println("   No automatic cleanup is performed.");
     }
 
     // checks file system status
@@ -644,13 +913,33 @@ public class carRentalSystem {
         } else {
             System.out.println("Data file not found - will be created on save");
         }
+        System.out.println("Last Load: " + deduplicatedStrings + " duplicate strings shared, saved about "
+                + (deduplicationSavedBytes + 512) / 1024 + " KB");
+
+        if (backgroundSaver != null) {
+            Map<String, Object> metrics = backgroundSaver.getMetrics();
+            System.out.println("\nBackground Saver:");
+            System.out.println("  Pending Changes: " + metrics.get("queueDepth"));
+            System.out.println("  Durable Position: " + metrics.get("durablePosition") + " / " + metrics.get("currentPosition"));
+            System.out.println("  Batches Written: " + metrics.get("flushCount") + " (" + metrics.get("flushedChanges") + " changes)");
+            System.out.println("  Snapshots Written: " + metrics.get("snapshotCount"));
+            System.out.printf("  Flush Latency: last %.2f ms, average %.2f ms, max %.2f ms%n",
+                    (Double) metrics.get("lastFlushMillis"), (Double) metrics.get("averageFlushMillis"),
+                    (Double) metrics.get("maxFlushMillis"));
+        }
     }
 
     // resets all the system data
     private void resetAllData() {
+        stopBackgroundSaver();
         this.carService = new CarService();
         this.customerService = new CustomerService();
         this.rentalService = new RentalService(carService, customerService);
+        snapshotRequired = true;
+        // the journal holds changes to the old data, so the empty data is written as a snapshot right away
+        // (the old file stays in the backups); should that fail, exiting writes it
+        saveSystemData(true);
+        startBackgroundSaver();
 
         System.out.println("All system data has been reset.");
     }
@@ -0,0 +1,20 @@
+package interfaces;
+
+public interface MutationListener {
+
+    // kinds of changes the services report
+    enum Type {
+        CAR_ADDED,
+        CAR_UPDATED,
+        CAR_REMOVED,
+        CUSTOMER_ADDED,
+        CUSTOMER_UPDATED,
+        CUSTOMER_REMOVED,
+        RENTAL_CREATED,
+        RENTAL_COMPLETED,
+        RENTAL_CANCELLED
+    }
+
+    // called after a change, record is the CSV line of the entity (null when it was removed)
+    void onMutation(Type type, String id, String record);
+}